@@ -1,11 +1,31 @@
 package com.grabx.app.grabx;
 
 import com.grabx.app.grabx.core.model.DownloadRow;
+import com.grabx.app.grabx.core.service.AdaptiveConcurrencyController;
+import com.grabx.app.grabx.core.service.BufferPool;
+import com.grabx.app.grabx.core.service.DownloadScheduler;
+import com.grabx.app.grabx.core.service.DownloadService;
+import com.grabx.app.grabx.core.service.FailureClassifier;
+import com.grabx.app.grabx.core.service.FolderIndex;
+import com.grabx.app.grabx.core.service.FragmentDownloader;
+import com.grabx.app.grabx.core.service.HlsParser;
+import com.grabx.app.grabx.core.service.HostConnectionLimiter;
+import com.grabx.app.grabx.core.service.HostFairExecutor;
+import com.grabx.app.grabx.core.service.HybridPlan;
+import com.grabx.app.grabx.core.service.MirrorSet;
+import com.grabx.app.grabx.core.service.OutputTemplateRenderer;
+import com.grabx.app.grabx.core.service.ResumeJournal;
+import com.grabx.app.grabx.core.service.StreamManifest;
+import com.grabx.app.grabx.core.service.StreamingHasher;
 import com.grabx.app.grabx.ui.components.HoverBubble;
 import com.grabx.app.grabx.ui.components.NoSelectionModel;
 import com.grabx.app.grabx.ui.dialogs.NativeDialogs;
 import com.grabx.app.grabx.thumbs.ThumbnailCacheManager;
+import com.grabx.app.grabx.util.ProcessBudget;
+import com.grabx.app.grabx.util.ProcessPriority;
+import com.grabx.app.grabx.util.ProcessSupervisor;
 import com.grabx.app.grabx.util.YtDlpManager;
+import com.grabx.app.grabx.util.YtDlpWorkerPool;
 import javafx.animation.*;
 import javafx.collections.transformation.SortedList;
 import javafx.geometry.NodeOrientation;
@@ -62,6 +82,10 @@ public class MainController {
     @FXML
     private Label statusText;
     @FXML
+    private Label globalSpeed;
+    @FXML
+    private Label concurrencyText;
+    @FXML
     private BorderPane root;
 
     @FXML
@@ -91,10 +115,13 @@ public class MainController {
 
 
     // fields in MainController
-    private final java.util.ArrayDeque<PlaylistEntry> playlistDownloadQueue = new java.util.ArrayDeque<>();
+    // Each queued item carries its batch: a later batch must not change an earlier one's mode, quality or width
+    private final java.util.ArrayDeque<QueuedPlaylistItem> playlistDownloadQueue = new java.util.ArrayDeque<>();
     private final java.util.concurrent.atomic.AtomicBoolean playlistBatchRunning = new java.util.concurrent.atomic.AtomicBoolean(false);
-    private volatile String playlistBatchMode = MODE_VIDEO;
-    private volatile String playlistBatchDefaultQuality = QUALITY_BEST;
+    private final java.util.concurrent.atomic.AtomicInteger playlistInFlight = new java.util.concurrent.atomic.AtomicInteger(0);
+    private static final String PREF_PLAYLIST_PARALLEL = "grabx.playlist.parallel";
+    private static final int DEFAULT_PLAYLIST_PARALLEL = 3;
+    private static final int MAX_PLAYLIST_PARALLEL = 8;
 
 
     private final java.util.concurrent.atomic.AtomicLong downloadOrderSeq =
@@ -161,6 +188,75 @@ public class MainController {
 
     private final java.util.Map<DownloadRow, Process> activeProcesses = new java.util.concurrent.ConcurrentHashMap<>();
 
+    // Native engine for direct-file links (segmented HTTP, no yt-dlp)
+    private final DownloadService directDownloadService = new DownloadService();
+    private final java.util.Map<DownloadRow, DownloadService.Job> activeDirectJobs = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // ===== Download scheduler (bounded number of active transfers) =====
+    private static final String PREF_MAX_ACTIVE_DOWNLOADS = "grabx.downloads.maxActive";
+    private static final int DEFAULT_MAX_ACTIVE_DOWNLOADS = 3;
+    private final DownloadScheduler downloadScheduler =
+            new DownloadScheduler(PREFS.getInt(PREF_MAX_ACTIVE_DOWNLOADS, DEFAULT_MAX_ACTIVE_DOWNLOADS),
+                    new HostConnectionLimiter(PREFS.getInt(PREF_PER_HOST_LIMIT, DEFAULT_PER_HOST_LIMIT)),
+                    this::launchDownloadRow);
+
+    // ===== Adaptive concurrency (AIMD on aggregate throughput) =====
+    private static final String PREF_ADAPTIVE_CONCURRENCY = "grabx.downloads.adaptive";
+    private static final int ADAPTIVE_MAX_ACTIVE = 8;
+    private AdaptiveConcurrencyController adaptiveController; // null when disabled (FX thread only)
+    private javafx.animation.Timeline throughputTl;
+    private final java.util.Map<DownloadRow, Long> lastSampledBytes = new java.util.IdentityHashMap<>();
+    private final java.util.concurrent.atomic.AtomicInteger recentFailures = new java.util.concurrent.atomic.AtomicInteger(0);
+
+    // ===== Hybrid transfer (yt-dlp extracts, the native engine downloads) =====
+    private static final String PREF_HYBRID_TRANSFER = "grabx.downloads.hybrid";
+    // bv*+ba: fetch video and audio at the same time instead of yt-dlp's one-after-the-other
+    private static final String PREF_PARALLEL_STREAMS = "grabx.downloads.parallelStreams";
+    // Feed both streams through FIFOs into ffmpeg: no .fNNN parts, the output is written once
+    private static final String PREF_PIPE_MERGE = "grabx.downloads.pipeMerge";
+
+    // ===== Suspend on pause (SIGSTOP/SIGCONT of the yt-dlp tree, POSIX only) =====
+    private static final String PREF_SUSPEND_ON_PAUSE = "grabx.downloads.suspendOnPause";
+    private static final String PREF_SUSPEND_TIMEOUT = "grabx.downloads.suspendTimeoutSec"; // then kill + --continue
+    private static final int DEFAULT_SUSPEND_TIMEOUT_SEC = 60;
+    // Paused rows whose process is frozen, with the timer that turns them into a normal pause
+    private final java.util.Map<DownloadRow, ScheduledFuture<?>> suspendedRows = new ConcurrentHashMap<>();
+
+    // ===== Auto-resume at startup (rows cut off by a quit/reboot that left partial files) =====
+    private static final String PREF_AUTO_RESUME = "grabx.downloads.autoResume";
+    private static final String PREF_AUTO_RESUME_STAGGER = "grabx.downloads.autoResumeStaggerSec";
+    private static final int DEFAULT_AUTO_RESUME_STAGGER_SEC = 5;
+    private static final long AUTO_RESUME_INITIAL_DELAY_MS = 2000; // let the window come up first
+
+    // ===== Automatic retry of transient failures (exponential backoff + jitter) =====
+    private static final String PREF_AUTO_RETRY = "grabx.downloads.autoRetry";
+    private static final String PREF_RETRY_MAX = "grabx.downloads.retryMax";
+    private static final int DEFAULT_RETRY_MAX = 5;
+    private static final long RETRY_BASE_MS = 5_000;
+    private static final long RETRY_CAP_MS = 5 * 60_000;
+    private static final int OUTPUT_TAIL_LINES = 20; // yt-dlp ERROR/WARNING lines kept for classification
+
+    // ===== Probe workers (warm Python yt_dlp processes instead of one spawn per probe) =====
+    private static final String PREF_PROBE_WORKERS = "grabx.probe.workers";
+    private static final String PREF_PROBE_WORKER_COUNT = "grabx.probe.workerCount";
+    private static final int DEFAULT_PROBE_WORKER_COUNT = 2;
+
+    // ===== Process priorities (nice/ionice/cgroup slice for child processes, Linux) =====
+    private static final String PREF_PROCESS_PRIORITIES = "grabx.process.priorities";
+
+    // ===== Bandwidth limit (global budget split across active downloads) =====
+    private static final String PREF_BANDWIDTH_LIMIT = "grabx.bandwidth.limit"; // bytes/sec, 0 = unlimited
+    private volatile long bandwidthCapBps = PREFS.getLong(PREF_BANDWIDTH_LIMIT, 0);
+    // --limit-rate each running yt-dlp process was started with (0 = none)
+    private final java.util.Map<DownloadRow, Long> ytDlpRateByRow = new java.util.concurrent.ConcurrentHashMap<>();
+    // A rate restart repeats yt-dlp's extraction, so a row gets at most one per interval; later changes wait
+    private static final long RATE_RESTART_MIN_INTERVAL_MS = 30_000;
+    private final java.util.Map<DownloadRow, Long> lastRateRestartAt = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.Set<DownloadRow> rateRestartPending = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    private static final java.util.List<String> SPEED_LIMIT_PRESETS = java.util.List.of(
+            "Unlimited", "256 KB/s", "512 KB/s", "1 MB/s", "2 MB/s", "5 MB/s", "10 MB/s"
+    );
+
     private final java.util.concurrent.ConcurrentHashMap<DownloadRow, Double> lastProgressMap =
             new java.util.concurrent.ConcurrentHashMap<>();
 
@@ -219,6 +315,7 @@ public class MainController {
     private static final String QUALITY_CUSTOM = "Custom (Mixed)";
     private static final String MODE_VIDEO = "Video";
     private static final String MODE_AUDIO = "Audio only";
+    private static final String MODE_DIRECT = "Direct";
 
     private static final String AUDIO_BEST = "Best audio (Recommended)";
     private static final String AUDIO_DEFAULT_FORMAT = "mp3";
@@ -249,6 +346,16 @@ public class MainController {
             new ThreadPoolExecutor.AbortPolicy()
     );
 
+    // ===== Per-host connection budget =====
+    private static final String PREF_PER_HOST_LIMIT = "grabx.downloads.perHost";
+    private static final int DEFAULT_PER_HOST_LIMIT = 4;
+    // Probes (both pools) share one budget; downloads have their own in the scheduler
+    private static final HostConnectionLimiter PROBE_HOST_LIMITER =
+            new HostConnectionLimiter(PREFS.getInt(PREF_PER_HOST_LIMIT, DEFAULT_PER_HOST_LIMIT));
+    // Round-robin front queue: the pool only ever sees as many jobs as it has threads
+    private static final HostFairExecutor PLAYLIST_PROBE_GATE =
+            new HostFairExecutor(PROBE_HOST_LIMITER, PLAYLIST_PROBE_EXEC, PLAYLIST_PROBE_THREADS, 64);
+
     // ========= Analyze URL (backend logic - v1) =========
     private enum ContentType {
         DIRECT_FILE,
@@ -309,6 +416,12 @@ public class MainController {
         loadDownloadHistoryOnce();
         updateMissingSidebarItem();
         startMissingFileWatcher();
+        startThroughputMonitor();
+        ProcessPriority.setEnabled(PREFS.getBoolean(PREF_PROCESS_PRIORITIES, true));
+        if (probeWorkersEnabled()) {
+            YtDlpWorkerPool.shared().setSize(PREFS.getInt(PREF_PROBE_WORKER_COUNT, DEFAULT_PROBE_WORKER_COUNT));
+            YtDlpWorkerPool.shared().prewarmAsync();
+        }
 
         setupClipboardAutoPaste();
 
@@ -401,7 +514,7 @@ public class MainController {
         if (!PLAYLIST_PROBE_INFLIGHT.add(videoId)) return true;
 
         try {
-            PLAYLIST_PROBE_EXEC.execute(() -> {
+            PLAYLIST_PROBE_GATE.execute(videoUrl, () -> {
                 try {
                     ProbeQualitiesResult pr = probeQualitiesWithSizes(videoUrl);
                     PLAYLIST_PROBE_CACHE.put(videoId, pr);
@@ -418,6 +531,161 @@ public class MainController {
         }
     }
 
+    // ===== Batched playlist probing (one yt-dlp -J run per chunk of videos) =====
+    private static final int PLAYLIST_PROBE_BATCH = 20; // URLs per run (keeps the command line short on Windows)
+
+    /**
+     * Probe several videos with one yt-dlp run. {@code onItem} gets each video on the FX thread
+     * as soon as its info object is parsed; videos missing from the output (private, removed,
+     * or the run failed) get an empty result, like a failed single probe. {@code onDone} runs last.
+     */
+    private static boolean probeVideoQualitiesBatchAsync(
+            java.util.List<String> videoIds,
+            java.util.function.BiConsumer<String, ProbeQualitiesResult> onItem,
+            Runnable onDone
+    ) {
+        java.util.List<String> todo = new java.util.ArrayList<>();
+        for (String vid : videoIds) {
+            if (vid == null || vid.isBlank()) continue;
+            ProbeQualitiesResult cached = PLAYLIST_PROBE_CACHE.get(vid);
+            if (cached != null) {
+                Platform.runLater(() -> onItem.accept(vid, cached));
+            } else if (PLAYLIST_PROBE_INFLIGHT.add(vid)) {
+                todo.add(vid);
+            }
+        }
+        if (todo.isEmpty()) {
+            Platform.runLater(onDone);
+            return true;
+        }
+
+        try {
+            PLAYLIST_PROBE_GATE.execute(youtubeWatchUrl(todo.get(0)), () -> {
+                java.util.Set<String> left = ConcurrentHashMap.newKeySet();
+                left.addAll(todo);
+                try {
+                    java.util.List<String> urls = new java.util.ArrayList<>();
+                    for (String vid : todo) urls.add(youtubeWatchUrl(vid));
+
+                    probeInfoJsonBatch(urls, root -> {
+                        String vid = root.path("id").asText("");
+                        if (!left.remove(vid)) return;
+                        ProbeQualitiesResult pr = probeResultFromInfoJson(youtubeWatchUrl(vid), root);
+                        PLAYLIST_PROBE_CACHE.put(vid, pr);
+                        PLAYLIST_PROBE_INFLIGHT.remove(vid);
+                        Platform.runLater(() -> onItem.accept(vid, pr));
+                    });
+                } catch (Exception ignored) {
+                } finally {
+                    long now = System.currentTimeMillis();
+                    for (String vid : left) {
+                        ProbeQualitiesResult empty = new ProbeQualitiesResult(
+                                new HashSet<>(), new HashMap<>(), new HashMap<>(), -1L, now);
+                        PLAYLIST_PROBE_INFLIGHT.remove(vid);
+                        Platform.runLater(() -> onItem.accept(vid, empty));
+                    }
+                    Platform.runLater(onDone);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ignored) {
+            for (String vid : todo) PLAYLIST_PROBE_INFLIGHT.remove(vid);
+            return false;
+        }
+    }
+
+    // Info objects for a chunk of URLs, handed over one by one as they are parsed
+    private static void probeInfoJsonBatch(
+            java.util.List<String> urls,
+            java.util.function.Consumer<com.fasterxml.jackson.databind.JsonNode> onInfo
+    ) throws java.io.IOException, InterruptedException {
+        YtDlpWorkerPool pool = probeWorkers();
+        if (pool != null) {
+            // What the worker's yt_dlp could not extract goes to the managed binary below
+            java.util.List<String> rest = new java.util.ArrayList<>();
+            int i = 0;
+            try {
+                for (; i < urls.size(); i++) {
+                    try {
+                        onInfo.accept(pool.extract(urls.get(i), "bv*+ba/b"));
+                    } catch (YtDlpWorkerPool.RemoteError e) {
+                        rest.add(urls.get(i));
+                    }
+                }
+            } catch (java.io.IOException e) {
+                rest.addAll(urls.subList(i, urls.size())); // worker trouble: spawn for the rest
+            }
+            if (rest.isEmpty()) return;
+            urls = rest;
+        }
+
+        java.util.List<String> args = new java.util.ArrayList<>(List.of(
+                "-J",
+                "--no-playlist",
+                "--no-warnings",
+                "--ignore-errors",
+                "--encoding", "utf-8",
+                // the default pick is what the Best size probe selects
+                "-f", "bv*+ba/b"
+        ));
+        args.addAll(urls);
+        // nobody is waiting on a particular row: stay out of the Add Link probe's way
+        YtDlpManager.runJsonStream(args, ProcessPriority.BACKGROUND, onInfo);
+    }
+
+    // What probeQualitiesWithSizes computes, from an info object already in hand (no extra spawns)
+    private static ProbeQualitiesResult probeResultFromInfoJson(String url, com.fasterxml.jackson.databind.JsonNode root) {
+        long now = System.currentTimeMillis();
+
+        Set<Integer> heights = new HashSet<>();
+        for (var f : root.path("formats")) {
+            int nh = normalizeHeight(f.path("height").asInt(-1));
+            if (nh > 0) heights.add(nh);
+        }
+        heights = normalizeHeights(heights);
+
+        Integer bestH = null;
+        for (Integer h : heights) {
+            if (h == null || h <= 0) continue;
+            if (bestH == null || h > bestH) bestH = h;
+        }
+
+        // %(filesize,filesize_approx)s of the selection; a merged pick carries it per stream
+        long bestBytes = root.path("filesize").asLong(-1);
+        if (bestBytes <= 0) bestBytes = root.path("filesize_approx").asLong(-1);
+        var requested = root.path("requested_formats");
+        if (bestBytes <= 0 && requested.isArray() && requested.size() > 0) {
+            long sum = 0;
+            for (var f : requested) {
+                long b = f.path("filesize").asLong(-1);
+                if (b <= 0) b = f.path("filesize_approx").asLong(-1);
+                if (b <= 0) {
+                    sum = -1;
+                    break;
+                }
+                sum += b;
+            }
+            bestBytes = sum;
+        }
+
+        Map<Integer, Long> bytesByHeight = new HashMap<>();
+        Map<Integer, String> sizeByHeight = new HashMap<>();
+        if (bestH != null && bestBytes > 0) {
+            bytesByHeight.put(bestH, bestBytes);
+            sizeByHeight.put(bestH, formatBytesDecimal(bestBytes));
+            SIZE_CACHE.put(url + "|" + MODE_VIDEO + "|" + QUALITY_BEST, bestBytes);
+            SIZE_CACHE.put(url + "|" + MODE_VIDEO + "|" + formatHeightLabel(bestH), bestBytes);
+        } else {
+            bestBytes = -1L;
+        }
+
+        ProbeQualitiesResult pr = new ProbeQualitiesResult(heights, bytesByHeight, sizeByHeight, bestBytes, now);
+        try {
+            VIDEO_INFO_CACHE.put(url, pr);
+        } catch (Exception ignored) {}
+        return pr;
+    }
+
 
     // ========= Actions =========
     @FXML
@@ -429,7 +697,7 @@ public class MainController {
 
     @FXML
     public void onSettings(ActionEvent event) {
-        if (statusText != null) statusText.setText("Settings clicked");
+        showSettingsDialog();
     }
 
     @FXML
@@ -455,14 +723,22 @@ public class MainController {
 
             // Pause only active ones
             if (st == DownloadRow.State.DOWNLOADING || st == DownloadRow.State.QUEUED ) {
+                downloadScheduler.remove(row);
+
                 Process p = activeProcesses.get(row);
                 try {
                     if (p != null && p.isAlive()) {
                         stopReasons.put(row, "PAUSE");
-                        p.destroy(); // stop process (simple pause behavior)
+                        killProcessTree(p); // whole tree, so a merging ffmpeg doesn't linger
                     }
                 } catch (Exception ignored) {}
 
+                DownloadService.Job dj = activeDirectJobs.get(row);
+                if (dj != null) {
+                    stopReasons.put(row, "PAUSE");
+                    dj.stop();
+                }
+
                 row.setState(DownloadRow.State.PAUSED);
                 affected++;
             }
@@ -541,12 +817,7 @@ public class MainController {
         long t = tStart("probeOnceFast", url);
 
         try {
-            String json = YtDlpManager.run(List.of(
-                    "-J",
-                    "--no-playlist",
-                    "--no-warnings",
-                    url
-            ));
+            String json = dumpInfoJson(url);
 
             if (json == null || json.isBlank()) return null;
             return parseVideoInfoFast(json);
@@ -583,6 +854,45 @@ public class MainController {
         return info;
     }
 
+    private static boolean probeWorkersEnabled() {
+        return PREFS.getBoolean(PREF_PROBE_WORKERS, false);
+    }
+
+    // Warm worker pool, or null when it is off or no Python with yt_dlp was found
+    private static YtDlpWorkerPool probeWorkers() {
+        if (!probeWorkersEnabled()) return null;
+        YtDlpWorkerPool pool = YtDlpWorkerPool.shared();
+        return pool.isAvailable() ? pool : null;
+    }
+
+    /**
+     * {@code yt-dlp -J --no-playlist url}, answered by a probe worker when possible.
+     * Only the managed binary's dumps are kept for {@code --load-info-json}: the worker's
+     * yt_dlp module can be a different version than the one that would replay them.
+     */
+    private static String dumpInfoJson(String url) throws java.io.IOException, InterruptedException {
+        YtDlpWorkerPool pool = probeWorkers();
+        if (pool != null) {
+            try {
+                return new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(pool.extract(url, null));
+            } catch (java.io.IOException e) {
+                // worker died, timed out, or its (possibly older) yt_dlp failed: the managed binary gets a go
+            }
+        }
+        String json = YtDlpManager.run(List.of(
+                "-J",
+                "--no-playlist",
+                "--no-warnings",
+                "--encoding", "utf-8",
+                "--user-agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36",
+                "--referer", "https://www.youtube.com/",
+                "--extractor-args", "youtube:player_client=android",
+                url
+        ));
+        if (json != null && !json.isBlank()) rememberInfoJson(url, json);
+        return json;
+    }
+
     static class VideoInfo {
         Set<Integer> heights = new TreeSet<>();
         Map<Integer, Long> sizeByHeight = new HashMap<>();
@@ -595,15 +905,7 @@ public class MainController {
         if (url == null || url.isBlank()) return heights;
 
         try {
-            List<String> args = List.of(
-                    "--no-warnings",
-                    "--no-playlist",
-                    "-J",
-                    "--encoding", "utf-8",
-                    url.trim()
-            );
-
-            String json = com.grabx.app.grabx.util.YtDlpManager.run(args);
+            String json = dumpInfoJson(url.trim());
             if (json == null) return heights;
 
             // Sometimes yt-dlp may emit non-JSON lines (network errors, warnings, etc.).
@@ -840,6 +1142,17 @@ public class MainController {
     private static Long fetchCombinedSizeBytesWithYtDlpPrint(String url, String selector) {
         if (url == null || url.isBlank()) return null;
 
+        // Worker: selection runs on the extraction it just cached for the heights probe
+        YtDlpWorkerPool pool = probeWorkers();
+        if (pool != null) {
+            try {
+                long v = pool.select(url.trim(), selector).path("filesize").asLong(-1);
+                return v > 0 ? v : null;
+            } catch (Exception ignored) {
+                // fall back to a spawn (the managed binary may be newer than the worker's yt_dlp)
+            }
+        }
+
         try {
             java.util.List<String> args = new java.util.ArrayList<>();
             args.add("--no-warnings");
@@ -996,6 +1309,207 @@ public class MainController {
         }), 350, java.util.concurrent.TimeUnit.MILLISECONDS);
     }
 
+    // Samples aggregate bytes/sec once per second: drives the footer speed and the adaptive limit
+    private void startThroughputMonitor() {
+        if (throughputTl != null) return;
+
+        if (PREFS.getBoolean(PREF_ADAPTIVE_CONCURRENCY, true)) {
+            adaptiveController = new AdaptiveConcurrencyController(1, ADAPTIVE_MAX_ACTIVE, downloadScheduler.getMaxActive());
+            downloadScheduler.setMaxActive(adaptiveController.getLimit());
+        }
+
+        throughputTl = new javafx.animation.Timeline(
+                new javafx.animation.KeyFrame(javafx.util.Duration.seconds(1), ev -> {
+                    try { sampleThroughput(); } catch (Exception ignored) {}
+                })
+        );
+        throughputTl.setCycleCount(javafx.animation.Animation.INDEFINITE);
+        try { throughputTl.play(); } catch (Exception ignored) {}
+    }
+
+    private void sampleThroughput() {
+        long total = 0;
+        java.util.Set<DownloadRow> seen = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+
+        for (DownloadRow r : downloadItems) {
+            if (r == null || r.state.get() != DownloadRow.State.DOWNLOADING) continue;
+            seen.add(r);
+
+            long now = Math.max(0, r.downloadedBytes.get());
+            Long prev = lastSampledBytes.put(r, now);
+            if (prev == null) continue;
+
+            // counter went back: yt-dlp moved on to the next stream (video -> audio)
+            long delta = (now >= prev) ? (now - prev) : now;
+            total += delta;
+        }
+        lastSampledBytes.keySet().retainAll(seen);
+
+        if (globalSpeed != null) {
+            globalSpeed.setText(total > 0 ? formatBytesDecimal(total) + "/s" : "0 KB/s");
+        }
+
+        int failures = recentFailures.getAndSet(0);
+        String decision = null;
+        if (adaptiveController != null) {
+            AdaptiveConcurrencyController.Decision d = adaptiveController.sample(
+                    total, downloadScheduler.activeCount(), downloadScheduler.queuedCount(), failures);
+            if (d.limit != downloadScheduler.getMaxActive()) downloadScheduler.setMaxActive(d.limit);
+            decision = d.reason;
+        }
+
+        if (concurrencyText != null) {
+            String txt = downloadScheduler.activeCount() + "/" + downloadScheduler.getMaxActive();
+            int waiting = downloadScheduler.queuedCount();
+            if (waiting > 0) txt += " (+" + waiting + " queued)";
+            if (decision != null) txt += " · auto: " + decision;
+            concurrencyText.setText(txt);
+            updateHostDiagnostics();
+        }
+    }
+
+    // Per-host active/queued counts (downloads + probes) on the footer tooltip
+    private void updateHostDiagnostics() {
+        StringBuilder sb = new StringBuilder("Downloads per host");
+        java.util.Map<String, HostConnectionLimiter.HostStats> dl = downloadScheduler.getHostLimiter().snapshot();
+        if (dl.isEmpty()) sb.append("\n  (idle)");
+        dl.forEach((h, st) -> sb.append("\n  ").append(h.isEmpty() ? "?" : h).append(": ").append(st));
+
+        java.util.Map<String, HostConnectionLimiter.HostStats> pr = PROBE_HOST_LIMITER.snapshot();
+        if (!pr.isEmpty()) {
+            sb.append("\nProbes per host");
+            pr.forEach((h, st) -> sb.append("\n  ").append(h.isEmpty() ? "?" : h).append(": ").append(st));
+        }
+        sb.append("\nLimit: ").append(downloadScheduler.getHostLimiter().getPerHostLimit()).append(" per host");
+
+        ProcessBudget budget = ProcessBudget.shared();
+        sb.append("\nProcesses (budget ").append(budget.used()).append("/").append(budget.capacity()).append(")");
+        budget.snapshot().forEach((k, st) -> {
+            if (st.running > 0 || st.waiting > 0) {
+                sb.append("\n  ").append(k.name().toLowerCase(java.util.Locale.ROOT)).append(": ").append(st);
+            }
+        });
+
+        BufferPool pool = directDownloadService.getBufferPool();
+        sb.append("\nBuffer pool: ").append(pool.hits()).append(" hits, ")
+                .append(pool.misses()).append(" misses, ").append(pool.idle()).append(" idle");
+
+        Tooltip tip = concurrencyText.getTooltip();
+        if (tip == null) {
+            tip = new Tooltip();
+            concurrencyText.setTooltip(tip);
+        }
+        tip.setText(sb.toString());
+    }
+
+    // ========= Bandwidth limit =========
+    // --limit-rate for a yt-dlp run: equal share of the global budget, capped by the row's own limit
+    private long ytDlpRateFor(DownloadRow row) {
+        long cap = bandwidthCapBps;
+        long share = (cap > 0) ? Math.max(1024, cap / Math.max(1, downloadScheduler.activeCount())) : 0;
+        long own = (row == null) ? 0 : Math.max(0, row.rateLimit.get());
+        if (share <= 0) return own;
+        if (own <= 0) return share;
+        return Math.min(share, own);
+    }
+
+    // Native transfers use a live token bucket: give it whatever the yt-dlp processes were not given
+    private void rebalanceBandwidth() {
+        long cap = bandwidthCapBps;
+        if (cap <= 0) {
+            directDownloadService.getGlobalLimiter().setRate(0);
+            return;
+        }
+
+        long ytSum = 0;
+        for (Long r : ytDlpRateByRow.values()) {
+            if (r != null && r > 0) ytSum += r;
+        }
+        // Never more than is left; 1 B/s rather than 0, which the limiter reads as "unlimited"
+        directDownloadService.getGlobalLimiter().setRate(Math.max(1, cap - ytSum));
+    }
+
+    private void applyBandwidthCap(long bytesPerSecond) {
+        bandwidthCapBps = Math.max(0, bytesPerSecond);
+        try { PREFS.putLong(PREF_BANDWIDTH_LIMIT, bandwidthCapBps); } catch (Exception ignored) {}
+
+        // yt-dlp rows only read --limit-rate at start: restart the ones whose share changed
+        for (DownloadRow row : activeProcesses.keySet()) {
+            if (suspendedRows.containsKey(row)) continue; // picked up when it is resumed
+            restartIfRateChanged(row);
+        }
+        rebalanceBandwidth();
+    }
+
+    private void applyRowRateLimit(DownloadRow row, long bytesPerSecond) {
+        if (row == null) return;
+        row.rateLimit.set(Math.max(0, bytesPerSecond));
+        saveDownloadHistoryAsync(); // the limit survives a restart of the app
+
+        DownloadService.Job dj = activeDirectJobs.get(row);
+        if (dj != null) dj.setRateLimit(row.rateLimit.get());
+
+        restartIfRateChanged(row);
+    }
+
+    // Only for user changes (cap, row limit): rows started while others run keep their rate until they finish
+    private void restartIfRateChanged(DownloadRow row) {
+        Long started = ytDlpRateByRow.get(row);
+        if (started == null || ytDlpRateFor(row) == started) return;
+
+        long wait = lastRateRestartAt.getOrDefault(row, 0L) + RATE_RESTART_MIN_INTERVAL_MS - System.currentTimeMillis();
+        if (wait > 0) {
+            // one deferred re-check per row; it sees whatever the cap is by then
+            if (rateRestartPending.add(row)) {
+                UI_DELAY_EXEC.schedule(() -> {
+                    rateRestartPending.remove(row);
+                    restartIfRateChanged(row);
+                }, wait, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        lastRateRestartAt.put(row, System.currentTimeMillis());
+        restartForNewRate(row);
+    }
+
+    // Kill and relaunch with --continue on the same slot (applyTerminalState handles "RESTART")
+    private void restartForNewRate(DownloadRow row) {
+        Process p = activeProcesses.get(row);
+        if (p == null || !p.isAlive()) return;
+        if (stopReasons.putIfAbsent(row, "RESTART") != null) return; // pause/cancel already in progress
+
+        Platform.runLater(() -> row.status.set("Applying speed limit"));
+        killProcessTree(p);
+    }
+
+    // "2 MB/s", "512K", "1.5 MiB/s", "0" / "Unlimited" -> bytes/sec (decimal units like formatBytesDecimal)
+    private static long parseSpeedLimit(String text) {
+        if (text == null) return 0;
+        String t = text.trim().toUpperCase(java.util.Locale.ROOT).replace("/S", "").replace("PS", "").trim();
+        if (t.isEmpty() || t.startsWith("UNLIMITED") || t.equals("0")) return 0;
+
+        Matcher m = Pattern.compile("^([0-9]+(?:[.,][0-9]+)?)\\s*([KMG]?)(I?)B?$").matcher(t);
+        if (!m.matches()) return -1;
+
+        double v = Double.parseDouble(m.group(1).replace(',', '.'));
+        double unit = m.group(3).isEmpty() ? 1000.0 : 1024.0;
+        switch (m.group(2)) {
+            case "K" -> v *= unit;
+            case "M" -> v *= unit * unit;
+            case "G" -> v *= unit * unit * unit;
+            default -> { }
+        }
+        return (long) Math.max(0, v);
+    }
+
+    private static String formatSpeedLimit(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) return "Unlimited";
+        for (String preset : SPEED_LIMIT_PRESETS) {
+            if (parseSpeedLimit(preset) == bytesPerSecond) return preset;
+        }
+        return formatBytesDecimal(bytesPerSecond) + "/s";
+    }
+
     private void refreshMissingFromDisk() {
         if (downloadItems == null || downloadItems.isEmpty()) return;
 
@@ -1546,7 +2060,11 @@ public class MainController {
                                     esc(r.quality) + "\t" +
                                     esc(state) + "\t" +
                                     esc(outPath) + "\t" +
-                                    lastUpdated
+                                    lastUpdated + "\t" +
+                                    esc(safeGet(r.checksum)) + "\t" +
+                                    esc(safeGet(r.expectedHash)) + "\t" +
+                                    esc(safeGet(r.mirrors)) + "\t" +
+                                    Math.max(0, r.rateLimit.get())
                     );
                 }
 
@@ -1579,6 +2097,8 @@ public class MainController {
             );
 
             java.util.List<DownloadRow> restored = new java.util.ArrayList<>();
+            // Saved while running or waiting for a slot (not paused by the user)
+            java.util.List<DownloadRow> interrupted = new java.util.ArrayList<>();
 
             for (String line : lines) {
                 if (line == null || line.isBlank()) continue;
@@ -1592,8 +2112,17 @@ public class MainController {
                 String quality = unesc(c[4]);
                 String state = unesc(c[5]);
                 String outPath = unesc(c[6]);
+                String savedState = (state == null) ? "" : state.trim().toUpperCase(java.util.Locale.ROOT);
                 long lastUpdated = 0L;
                 try { lastUpdated = Long.parseLong(c[7].trim()); } catch (Exception ignored) {}
+                // Columns added later (older files simply don't have them)
+                String checksum = (c.length > 8) ? unesc(c[8]) : null;
+                String expectedHash = (c.length > 9) ? unesc(c[9]) : null;
+                String mirrors = (c.length > 10) ? unesc(c[10]) : null;
+                long rateLimit = 0L;
+                if (c.length > 11) {
+                    try { rateLimit = Math.max(0, Long.parseLong(c[11].trim())); } catch (Exception ignored) {}
+                }
 
                 if (lastUpdated > 0 && lastUpdated < cutoff) continue;
                 if (url == null || url.isBlank()) continue;
@@ -1633,6 +2162,10 @@ public class MainController {
                 if (outPath != null && !outPath.isBlank()) {
                     try { r.outputFile.set(java.nio.file.Paths.get(outPath)); } catch (Exception ignored) {}
                 }
+                if (checksum != null && !checksum.isBlank()) r.checksum.set(checksum);
+                if (expectedHash != null && !expectedHash.isBlank()) r.expectedHash.set(expectedHash);
+                if (mirrors != null && !mirrors.isBlank()) r.mirrors.set(mirrors);
+                if (rateLimit > 0) r.rateLimit.set(rateLimit);
 
                 // Detect if the output file is actually present on disk
                 boolean fileOk = false;
@@ -1709,10 +2242,13 @@ public class MainController {
                         r.progress.set(0.0);
                     } else {
                         r.progress.set(0.0);
+                        // Native transfer cut short (pause, quit or crash): its journal says what is on disk
+                        if (isDirectRow(r)) restoreDirectResumeState(r);
                     }
                 } catch (Exception ignored) {}
 
                 restored.add(r);
+                if ("DOWNLOADING".equals(savedState) || "QUEUED".equals(savedState)) interrupted.add(r);
             }
 
             if (!restored.isEmpty()) {
@@ -1729,6 +2265,7 @@ public class MainController {
                         }
                         warmMissingThumbnailsAsync(restored);
                         updateMissingSidebarItem();
+                        if (PREFS.getBoolean(PREF_AUTO_RESUME, false)) scheduleAutoResume(interrupted);
                     } catch (Exception ignored) {}
                 });
             }
@@ -1814,6 +2351,8 @@ public class MainController {
             // If queue is full, don't block UI threads
             new ThreadPoolExecutor.AbortPolicy()
     );
+    private static final HostFairExecutor VIDEO_SIZE_GATE =
+            new HostFairExecutor(PROBE_HOST_LIMITER, VIDEO_SIZE_EXEC, VIDEO_SIZE_THREADS, 32);
 
     // Avoid duplicate probes for the same (url|quality) while one is already running
     private static final java.util.Set<String> VIDEO_SIZE_INFLIGHT =
@@ -1992,7 +2531,7 @@ public class MainController {
         };
 
         try {
-            VIDEO_SIZE_EXEC.execute(job);
+            VIDEO_SIZE_GATE.execute(videoUrl, job);
         } catch (Exception ex) {
             new Thread(job, "playlist-size-probe").start();
         }
@@ -2207,6 +2746,28 @@ public class MainController {
         grid.add(browseBtn, 2, r);
         GridPane.setHgrow(folderField, Priority.ALWAYS);
         r++;
+        // Optional published hash for direct files (SHA-256, MD5 or CRC32C; picked by length)
+        Label hashLbl = new Label("Checksum");
+        TextField hashField = new TextField();
+        hashField.setPromptText("Expected SHA-256 / MD5 / CRC32C (optional)");
+        hashField.getStyleClass().add("gx-input");
+        grid.add(hashLbl, 0, r);
+        grid.add(hashField, 1, r, 2, 1);
+        setManagedVisible(hashLbl, false);
+        setManagedVisible(hashField, false);
+        r++;
+        // Same file on other servers: segments are spread over whichever is fastest
+        Label mirrorsLbl = new Label("Mirrors");
+        TextArea mirrorsArea = new TextArea();
+        mirrorsArea.setPromptText("Other URLs for the same file, one per line (optional)");
+        mirrorsArea.setPrefRowCount(3);
+        mirrorsArea.setWrapText(false);
+        mirrorsArea.getStyleClass().add("gx-input");
+        grid.add(mirrorsLbl, 0, r);
+        grid.add(mirrorsArea, 1, r, 2, 1);
+        setManagedVisible(mirrorsLbl, false);
+        setManagedVisible(mirrorsArea, false);
+        r++;
         grid.add(info, 1, r, 2, 1);
         r++;
         grid.add(sizeInfo, 1, r, 2, 1);
@@ -2294,7 +2855,7 @@ public class MainController {
                 if (!VIDEO_SIZE_INFLIGHT.add(inflightKey)) return; // already running
 
                 try {
-                    VIDEO_SIZE_EXEC.execute(() -> {
+                    VIDEO_SIZE_GATE.execute(u, () -> {
                         Long bytes = null;
                         try {
                             if (MODE_VIDEO.equals(modeV)) {
@@ -2409,6 +2970,10 @@ public class MainController {
                 info.setTextFill(Color.web("#ff4d4d"));
                 okBtn.setDisable(true);
             }
+            setManagedVisible(hashLbl, t == ContentType.DIRECT_FILE);
+            setManagedVisible(hashField, t == ContentType.DIRECT_FILE);
+            setManagedVisible(mirrorsLbl, t == ContentType.DIRECT_FILE);
+            setManagedVisible(mirrorsArea, t == ContentType.DIRECT_FILE);
         };
 
         getBtn.setOnAction(e -> {
@@ -2546,7 +3111,16 @@ public class MainController {
                 addDownloadItemToList(url, folderField.getText(), modeCombo.getValue(), qualityCombo.getValue());
                 saveDownloadHistoryAsync();
             } else if (t == ContentType.DIRECT_FILE) {
-                addDownloadItemToList(url, folderField.getText(), "Direct", "Auto");
+                String hash = hashField.getText() == null ? "" : hashField.getText().trim();
+                if (!hash.isEmpty() && StreamingHasher.Algorithm.forHex(hash) == null) {
+                    if (statusText != null) statusText.setText("Ignored checksum (not SHA-256 / MD5 / CRC32C hex)");
+                    hash = "";
+                }
+                DownloadRow row = addDownloadItemToList(url, folderField.getText(), MODE_DIRECT, "Auto");
+                // Set before the row's queued start runs (that happens in a later runLater)
+                if (!hash.isEmpty()) row.expectedHash.set(StreamingHasher.normalizeHex(hash));
+                String mirrorUrls = parseMirrorUrls(mirrorsArea.getText(), url);
+                if (!mirrorUrls.isEmpty()) row.mirrors.set(mirrorUrls);
                 saveDownloadHistoryAsync();
             } else if (t == ContentType.PLAYLIST) {
                 if (statusText != null) statusText.setText("Playlist detected (UI next): " + shorten(url));
@@ -2556,6 +3130,268 @@ public class MainController {
         });
         dialog.show();
     }
+    // ========= Settings dialog =========
+    private void showSettingsDialog() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Settings");
+        dialog.setHeaderText(null);
+
+        try {
+            if (root != null && root.getScene() != null && root.getScene().getWindow() != null) {
+                dialog.initOwner(root.getScene().getWindow());
+                dialog.initModality(javafx.stage.Modality.WINDOW_MODAL);
+            }
+        } catch (Exception ignored) {}
+
+        DialogPane pane = dialog.getDialogPane();
+        installClickToDefocus(pane);
+
+        pane.getStyleClass().add("gx-dialog");
+        pane.setStyle("-fx-background-color: #121826;");
+        pane.setPadding(Insets.EMPTY);
+        pane.getStylesheets().addAll(
+                getClass().getResource("/com/grabx/app/grabx/styles/theme-base.css").toExternalForm(),
+                getClass().getResource("/com/grabx/app/grabx/styles/layout.css").toExternalForm(),
+                getClass().getResource("/com/grabx/app/grabx/styles/buttons.css").toExternalForm(),
+                getClass().getResource("/com/grabx/app/grabx/styles/sidebar.css").toExternalForm()
+        );
+
+        dialog.setOnShowing(ev -> {
+            Scene sc = pane.getScene();
+            if (sc != null) {
+                sc.setFill(Color.web("#121826"));
+                sc.getRoot().setStyle("-fx-background-color: #121826;");
+            }
+            pane.applyCss();
+            pane.layout();
+        });
+
+        ButtonType saveBtn = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
+        pane.getButtonTypes().setAll(ButtonType.CANCEL, saveBtn);
+        Button saveButton = (Button) pane.lookupButton(saveBtn);
+        saveButton.getStyleClass().addAll("gx-btn", "gx-btn-primary");
+
+        GridPane grid = new GridPane();
+        grid.getStyleClass().add("gx-dialog-grid");
+        grid.setHgap(12);
+        grid.setVgap(12);
+        grid.setPadding(Insets.EMPTY);
+
+        // Max simultaneous downloads (everything else waits in the queue)
+        Spinner<Integer> maxActiveSpinner = new Spinner<>(
+                DownloadScheduler.MIN_ACTIVE, DownloadScheduler.MAX_ACTIVE,
+                PREFS.getInt(PREF_MAX_ACTIVE_DOWNLOADS, DEFAULT_MAX_ACTIVE_DOWNLOADS));
+        maxActiveSpinner.setEditable(true);
+        maxActiveSpinner.getStyleClass().add("gx-input");
+
+        Label maxActiveHint = new Label("Extra downloads wait in the queue until a slot frees.");
+        maxActiveHint.getStyleClass().add("gx-text-muted");
+        maxActiveHint.setTextFill(Color.web("#9aa4b2"));
+        maxActiveHint.setWrapText(true);
+
+        // Connections per host (downloads and probes), so one domain can't take every slot
+        Spinner<Integer> perHostSpinner = new Spinner<>(1, DownloadScheduler.MAX_ACTIVE,
+                downloadScheduler.getHostLimiter().getPerHostLimit());
+        perHostSpinner.setEditable(true);
+        perHostSpinner.getStyleClass().add("gx-input");
+
+        // Global bandwidth budget, split across active downloads
+        ComboBox<String> bandwidthCombo = new ComboBox<>();
+        bandwidthCombo.getStyleClass().add("gx-combo");
+        bandwidthCombo.setEditable(true);
+        bandwidthCombo.getItems().setAll(SPEED_LIMIT_PRESETS);
+        bandwidthCombo.setValue(formatSpeedLimit(bandwidthCapBps));
+
+        // Let the AIMD controller move the limit with the measured throughput
+        CheckBox adaptiveCheck = new CheckBox("Adapt to the network (1-" + ADAPTIVE_MAX_ACTIVE + " downloads)");
+        adaptiveCheck.setSelected(adaptiveController != null);
+
+        // yt-dlp only resolves the media URLs; the segmented engine moves the bytes
+        CheckBox hybridCheck = new CheckBox("Download video streams with the built-in engine");
+        hybridCheck.setSelected(PREFS.getBoolean(PREF_HYBRID_TRANSFER, false));
+        CheckBox parallelStreamsCheck = new CheckBox("Fetch video and audio streams at the same time");
+        parallelStreamsCheck.setSelected(PREFS.getBoolean(PREF_PARALLEL_STREAMS, false));
+        CheckBox pipeMergeCheck = new CheckBox("Merge while downloading (no temporary stream files, no resume)");
+        pipeMergeCheck.setSelected(PREFS.getBoolean(PREF_PIPE_MERGE, false));
+
+        // Pause freezes yt-dlp in place; after the timeout it is stopped and resumed with --continue
+        CheckBox suspendCheck = new CheckBox("Pause by suspending yt-dlp (instant resume)");
+        suspendCheck.setSelected(PREFS.getBoolean(PREF_SUSPEND_ON_PAUSE, true));
+        suspendCheck.setDisable(isWindowsOs());
+        Spinner<Integer> suspendTimeoutSpinner = new Spinner<>(5, 3600,
+                PREFS.getInt(PREF_SUSPEND_TIMEOUT, DEFAULT_SUSPEND_TIMEOUT_SEC), 5);
+        suspendTimeoutSpinner.setEditable(true);
+        suspendTimeoutSpinner.getStyleClass().add("gx-input");
+        suspendTimeoutSpinner.disableProperty().bind(suspendCheck.selectedProperty().not());
+
+        CheckBox autoResumeCheck = new CheckBox("Resume interrupted downloads at startup");
+        autoResumeCheck.setSelected(PREFS.getBoolean(PREF_AUTO_RESUME, false));
+        Spinner<Integer> staggerSpinner = new Spinner<>(0, 120,
+                PREFS.getInt(PREF_AUTO_RESUME_STAGGER, DEFAULT_AUTO_RESUME_STAGGER_SEC), 1);
+        staggerSpinner.setEditable(true);
+        staggerSpinner.getStyleClass().add("gx-input");
+        staggerSpinner.disableProperty().bind(autoResumeCheck.selectedProperty().not());
+
+        CheckBox autoRetryCheck = new CheckBox("Retry network/server errors automatically");
+        autoRetryCheck.setSelected(PREFS.getBoolean(PREF_AUTO_RETRY, true));
+        Spinner<Integer> retryMaxSpinner = new Spinner<>(1, 20, PREFS.getInt(PREF_RETRY_MAX, DEFAULT_RETRY_MAX), 1);
+        retryMaxSpinner.setEditable(true);
+        retryMaxSpinner.getStyleClass().add("gx-input");
+        retryMaxSpinner.disableProperty().bind(autoRetryCheck.selectedProperty().not());
+
+        // Probes go to long-lived Python processes instead of starting yt-dlp every time
+        CheckBox probeWorkersCheck = new CheckBox("Keep yt-dlp probe workers running (needs Python yt_dlp)");
+        probeWorkersCheck.setSelected(probeWorkersEnabled());
+        Spinner<Integer> probeWorkerSpinner = new Spinner<>(1, YtDlpWorkerPool.MAX_WORKERS,
+                PREFS.getInt(PREF_PROBE_WORKER_COUNT, DEFAULT_PROBE_WORKER_COUNT), 1);
+        probeWorkerSpinner.setEditable(true);
+        probeWorkerSpinner.getStyleClass().add("gx-input");
+        probeWorkerSpinner.disableProperty().bind(probeWorkersCheck.selectedProperty().not());
+
+        // Downloads and background probing/remux run at lower CPU/I/O priority than Add Link probes
+        CheckBox prioritiesCheck = new CheckBox("Lower the priority of background processes (Linux)");
+        prioritiesCheck.setSelected(PREFS.getBoolean(PREF_PROCESS_PRIORITIES, true));
+        prioritiesCheck.setDisable(!isLinuxOs());
+
+        int r = 0;
+        grid.add(new Label("Simultaneous downloads"), 0, r);
+        grid.add(maxActiveSpinner, 1, r);
+        r++;
+        grid.add(maxActiveHint, 1, r);
+        r++;
+        grid.add(adaptiveCheck, 1, r);
+        r++;
+        grid.add(new Label("Per host"), 0, r);
+        grid.add(perHostSpinner, 1, r);
+        r++;
+        grid.add(new Label("Bandwidth limit"), 0, r);
+        grid.add(bandwidthCombo, 1, r);
+        r++;
+        grid.add(hybridCheck, 1, r);
+        r++;
+        grid.add(parallelStreamsCheck, 1, r);
+        r++;
+        grid.add(pipeMergeCheck, 1, r);
+        r++;
+        grid.add(suspendCheck, 1, r);
+        r++;
+        grid.add(new Label("Suspend up to (s)"), 0, r);
+        grid.add(suspendTimeoutSpinner, 1, r);
+        r++;
+        grid.add(autoResumeCheck, 1, r);
+        r++;
+        grid.add(new Label("Stagger (s)"), 0, r);
+        grid.add(staggerSpinner, 1, r);
+        r++;
+        grid.add(autoRetryCheck, 1, r);
+        r++;
+        grid.add(new Label("Max retries"), 0, r);
+        grid.add(retryMaxSpinner, 1, r);
+        r++;
+        grid.add(probeWorkersCheck, 1, r);
+        r++;
+        grid.add(new Label("Probe workers"), 0, r);
+        grid.add(probeWorkerSpinner, 1, r);
+        r++;
+        grid.add(prioritiesCheck, 1, r);
+
+        pane.setContent(grid);
+        pane.setPrefWidth(560);
+
+        dialog.setResultConverter(btn -> btn);
+        dialog.resultProperty().addListener((obs, oldRes, res) -> {
+            if (res != saveBtn) return;
+
+            int maxActive;
+            try {
+                maxActive = Integer.parseInt(maxActiveSpinner.getEditor().getText().trim());
+            } catch (Exception e) {
+                maxActive = maxActiveSpinner.getValue();
+            }
+            maxActive = Math.max(DownloadScheduler.MIN_ACTIVE, Math.min(DownloadScheduler.MAX_ACTIVE, maxActive));
+
+            boolean adaptive = adaptiveCheck.isSelected();
+
+            int perHost;
+            try {
+                perHost = Integer.parseInt(perHostSpinner.getEditor().getText().trim());
+            } catch (Exception e) {
+                perHost = perHostSpinner.getValue();
+            }
+            perHost = Math.max(1, Math.min(DownloadScheduler.MAX_ACTIVE, perHost));
+            try { PREFS.putInt(PREF_PER_HOST_LIMIT, perHost); } catch (Exception ignored) {}
+            downloadScheduler.getHostLimiter().setPerHostLimit(perHost);
+            PROBE_HOST_LIMITER.setPerHostLimit(perHost);
+
+            String capText = bandwidthCombo.getEditor().getText();
+            long cap = parseSpeedLimit(capText == null || capText.isBlank() ? bandwidthCombo.getValue() : capText);
+            if (cap >= 0 && cap != bandwidthCapBps) applyBandwidthCap(cap);
+
+            try { PREFS.putInt(PREF_MAX_ACTIVE_DOWNLOADS, maxActive); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_ADAPTIVE_CONCURRENCY, adaptive); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_HYBRID_TRANSFER, hybridCheck.isSelected()); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_PARALLEL_STREAMS, parallelStreamsCheck.isSelected()); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_PIPE_MERGE, pipeMergeCheck.isSelected()); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_SUSPEND_ON_PAUSE, suspendCheck.isSelected()); } catch (Exception ignored) {}
+            int suspendSec;
+            try {
+                suspendSec = Integer.parseInt(suspendTimeoutSpinner.getEditor().getText().trim());
+            } catch (Exception e) {
+                suspendSec = suspendTimeoutSpinner.getValue();
+            }
+            try { PREFS.putInt(PREF_SUSPEND_TIMEOUT, Math.max(5, Math.min(3600, suspendSec))); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_AUTO_RESUME, autoResumeCheck.isSelected()); } catch (Exception ignored) {}
+            int staggerSec;
+            try {
+                staggerSec = Integer.parseInt(staggerSpinner.getEditor().getText().trim());
+            } catch (Exception e) {
+                staggerSec = staggerSpinner.getValue();
+            }
+            try { PREFS.putInt(PREF_AUTO_RESUME_STAGGER, Math.max(0, Math.min(120, staggerSec))); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_AUTO_RETRY, autoRetryCheck.isSelected()); } catch (Exception ignored) {}
+            int retryMax;
+            try {
+                retryMax = Integer.parseInt(retryMaxSpinner.getEditor().getText().trim());
+            } catch (Exception e) {
+                retryMax = retryMaxSpinner.getValue();
+            }
+            try { PREFS.putInt(PREF_RETRY_MAX, Math.max(1, Math.min(20, retryMax))); } catch (Exception ignored) {}
+            int workerCount;
+            try {
+                workerCount = Integer.parseInt(probeWorkerSpinner.getEditor().getText().trim());
+            } catch (Exception e) {
+                workerCount = probeWorkerSpinner.getValue();
+            }
+            workerCount = Math.max(1, Math.min(YtDlpWorkerPool.MAX_WORKERS, workerCount));
+            try { PREFS.putBoolean(PREF_PROBE_WORKERS, probeWorkersCheck.isSelected()); } catch (Exception ignored) {}
+            try { PREFS.putInt(PREF_PROBE_WORKER_COUNT, workerCount); } catch (Exception ignored) {}
+            try { PREFS.putBoolean(PREF_PROCESS_PRIORITIES, prioritiesCheck.isSelected()); } catch (Exception ignored) {}
+            ProcessPriority.setEnabled(prioritiesCheck.isSelected());
+            YtDlpWorkerPool.shared().setSize(workerCount);
+            if (probeWorkersCheck.isSelected()) {
+                YtDlpWorkerPool.shared().prewarmAsync();
+            } else {
+                YtDlpWorkerPool.shared().shutdown();
+            }
+
+            // the saved value is the starting point; the controller moves it from there
+            if (adaptive) {
+                if (adaptiveController == null) {
+                    adaptiveController = new AdaptiveConcurrencyController(1, ADAPTIVE_MAX_ACTIVE, maxActive);
+                } else {
+                    adaptiveController.reset(maxActive);
+                }
+                downloadScheduler.setMaxActive(adaptiveController.getLimit());
+            } else {
+                adaptiveController = null;
+                downloadScheduler.setMaxActive(maxActive);
+            }
+
+            if (statusText != null) statusText.setText("Settings saved");
+        });
+        dialog.show();
+    }
+
     private void closeActiveAddLinkDialogIfOpen() {
         try {
             if (activeAddLinkDialog != null) {
@@ -2706,7 +3542,7 @@ public class MainController {
             pb.redirectErrorStream(true);
             pb.environment().putIfAbsent("PYTHONIOENCODING", "utf-8");
 
-            Process p = pb.start();
+            Process p = ProcessBudget.shared().start(ProcessBudget.Kind.PROBE, pb);
 
             StringBuilder sb = new StringBuilder(256 * 1024);
             try (java.io.BufferedReader br = new java.io.BufferedReader(
@@ -3446,6 +4282,7 @@ public class MainController {
                     try {
                         Process pr = activeProcesses.get(it);
                         if (pr != null && pr.isAlive()) risky = true;
+                        if (activeDirectJobs.containsKey(it)) risky = true;
                     } catch (Exception ignored) {}
 
                     // Also consider progress > 0 as risky
@@ -3474,13 +4311,20 @@ public class MainController {
                     }
 
                     // ---- Cancel any running process AFTER confirmation ----
+                    try { downloadScheduler.remove(it); } catch (Exception ignored) {}
                     try {
                         Process p = activeProcesses.get(it);
                         if (p != null && p.isAlive()) {
                             stopReasons.put(it, "CANCEL");
+                            dropSuspension(it, p);
                             try { p.destroy(); } catch (Exception ignored) {}
                             try { p.destroyForcibly(); } catch (Exception ignored) {}
                         }
+                        DownloadService.Job dj = activeDirectJobs.get(it);
+                        if (dj != null) {
+                            stopReasons.put(it, "CANCEL");
+                            dj.stop();
+                        }
                     } catch (Exception ignored) {}
 
                     try { activeProcesses.remove(it); } catch (Exception ignored) {}
@@ -3603,7 +4447,7 @@ public class MainController {
                     if (statusText != null) statusText.setText("Retry: " + it.title.get());
 
                     // ابدأ من جديد (وخليها --continue عشان لو في جزء نازل يكمل)
-                    startDownloadRow(it, true);
+                    startDownloadRow(it, true, DownloadScheduler.PRIORITY_HIGH);
                     updateMissingSidebarItem();
                 });
 
@@ -3614,6 +4458,42 @@ public class MainController {
                         java.awt.Desktop.getDesktop().browse(new java.net.URI(it.url.trim()));
                     } catch (Exception ignored) {}
                 });
+
+                // Right click: per-download speed limit (on top of the global one)
+                Menu speedMenu = new Menu("Speed limit");
+                for (String preset : SPEED_LIMIT_PRESETS) {
+                    MenuItem mi = new MenuItem(preset);
+                    mi.setOnAction(e -> {
+                        DownloadRow it = getItem();
+                        if (it == null) return;
+                        applyRowRateLimit(it, parseSpeedLimit(preset));
+                        if (statusText != null) statusText.setText("Speed limit " + preset + ": " + it.title.get());
+                    });
+                    speedMenu.getItems().add(mi);
+                }
+                // Checksum recorded while the file streamed (direct downloads only)
+                MenuItem copyHashItem = new MenuItem("Copy SHA-256");
+                copyHashItem.setOnAction(e -> {
+                    DownloadRow it = getItem();
+                    String sum = (it == null) ? null : it.checksum.get();
+                    if (sum == null || sum.isBlank()) return;
+                    javafx.scene.input.ClipboardContent cc = new javafx.scene.input.ClipboardContent();
+                    cc.putString(sum.startsWith("sha256:") ? sum.substring(7) : sum);
+                    javafx.scene.input.Clipboard.getSystemClipboard().setContent(cc);
+                    if (statusText != null) statusText.setText("Copied SHA-256: " + it.title.get());
+                });
+                ContextMenu cardMenu = new ContextMenu(speedMenu, copyHashItem);
+                cardMenu.setOnShowing(e -> {
+                    DownloadRow it = getItem();
+                    speedMenu.setText("Speed limit (" + formatSpeedLimit(it == null ? 0 : it.rateLimit.get()) + ")");
+                    String sum = (it == null) ? null : it.checksum.get();
+                    copyHashItem.setVisible(sum != null && !sum.isBlank());
+                });
+                card.setOnContextMenuRequested(e -> {
+                    if (getItem() == null) return;
+                    cardMenu.show(card, e.getScreenX(), e.getScreenY());
+                    e.consume();
+                });
             }
 
             @Override
@@ -3896,7 +4776,7 @@ public class MainController {
     }
 
 
-    private void addDownloadItemToList(String url, String folder, String mode, String quality) {
+    private DownloadRow addDownloadItemToList(String url, String folder, String mode, String quality) {
         ensureDownloadsListView();
         url = normalizeYoutubeSingleVideoUrl(url);
         String initialTitle = shorten(url);
@@ -3961,7 +4841,8 @@ public class MainController {
         if (statusText != null) statusText.setText("Queued: " + row.title.get());
 
         // ✅ oEmbed title (سريع) وبعدها احفظ التاريخ مرة ثانية
-        if (url != null && !url.isBlank()) {
+        // Direct files take their title from the server file name instead.
+        if (url != null && !url.isBlank() && !MODE_DIRECT.equals(mode)) {
             String finalUrl1 = url;
             new Thread(() -> {
                 String realTitle = fetchTitleWithOEmbed(finalUrl1);
@@ -3981,6 +4862,7 @@ public class MainController {
                 });
             }, "title-oembed").start();
         }
+        return row;
     }
 
     private static String safeGet(javafx.beans.property.StringProperty p) {
@@ -4007,9 +4889,51 @@ public class MainController {
     // Only keep the version with yt-dlp --progress-template and regex patterns DEST1, DEST2, MERGE, PROG, etc.
 
     private void startDownloadRow(DownloadRow row, boolean resume) {
+        startDownloadRow(row, resume, DownloadScheduler.PRIORITY_NORMAL);
+    }
+
+    // Goes through the scheduler: the row only starts when a transfer slot is free
+    private void startDownloadRow(DownloadRow row, boolean resume, int priority) {
         if (row == null) return;
 
-        // prevent duplicate runs for same row
+        // Frozen by a pause: continue in place (it still holds its slot)
+        if (resumeSuspendedRow(row)) return;
+
+        stopReasons.remove(row);
+        if (downloadScheduler.submit(row, resume, priority)) return;
+
+        Platform.runLater(() -> {
+            if (!downloadScheduler.isQueued(row)) return;
+            row.setState(DownloadRow.State.QUEUED);
+            row.status.set("Queued");
+            row.speed.set("");
+            row.eta.set("");
+        });
+    }
+
+    // Called by the scheduler once the row holds a slot
+    private void launchDownloadRow(DownloadRow row, boolean resume) {
+        if (row == null) return;
+
+        rebalanceBandwidth();
+
+        // Direct files use the native segmented engine instead of yt-dlp's generic extractor
+        if (isDirectRow(row)) {
+            startDirectDownloadRow(row, resume);
+            return;
+        }
+
+        if (MODE_VIDEO.equals(row.mode)
+                && (PREFS.getBoolean(PREF_HYBRID_TRANSFER, false) || PREFS.getBoolean(PREF_PARALLEL_STREAMS, false))) {
+            startHybridDownloadRow(row, resume);
+            return;
+        }
+
+        launchYtDlpRow(row, resume);
+    }
+
+    private void launchYtDlpRow(DownloadRow row, boolean resume) {
+        // prevent duplicate runs for same row
         Process existing = activeProcesses.get(row);
         if (existing != null && existing.isAlive()) return;
 
@@ -4030,9 +4954,12 @@ public class MainController {
         final String mode = row.mode;
         final String quality = row.quality;
 
+        // The thread only drains yt-dlp's output (a pipe read blocks a platform thread either way:
+        // a virtual thread would pin its carrier); the exit is handled by the supervisor, not waited for
         new Thread(() -> {
             Process p = null;
             final String[] lastError = new String[]{null};
+            final java.util.ArrayDeque<String> outputTail = new java.util.ArrayDeque<>(OUTPUT_TAIL_LINES);
 
             // detect output file path
             final java.util.regex.Pattern DEST1 =
@@ -4078,16 +5005,31 @@ public class MainController {
                 // allow resume / pause-resume
                 cmd.add("--continue");
 
-                cmd.add("--user-agent");
-                cmd.add("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36");
-                cmd.add("--referer");
-                cmd.add("https://www.youtube.com/");
-                cmd.add("--extractor-args");
-                cmd.add("youtube:player_client=android");
+                // Fresh Add Link probe: replay it instead of extracting again. Its formats carry
+                // their own http_headers, so the client/UA overrides only apply to a live extraction.
+                final java.nio.file.Path infoJson = freshInfoJsonFile(url);
+                if (infoJson == null) {
+                    cmd.add("--user-agent");
+                    cmd.add("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36");
+                    cmd.add("--referer");
+                    cmd.add("https://www.youtube.com/");
+                    cmd.add("--extractor-args");
+                    cmd.add("youtube:player_client=android");
+                }
 
                 // Do NOT overwrite existing files (we will decide the naming strategy below)
                 cmd.add("--no-overwrites");
 
+                // Share of the global bandwidth budget (yt-dlp can't change it while running).
+                // Rows already running keep theirs; the native bucket absorbs any overshoot until they finish
+                long rate = ytDlpRateFor(row);
+                ytDlpRateByRow.put(row, rate);
+                rebalanceBandwidth(); // the native bucket gets what this row was not given
+                if (rate > 0) {
+                    cmd.add("--limit-rate");
+                    cmd.add(String.valueOf(rate));
+                }
+
                 // UTF-8 output
                 cmd.add("--encoding");
                 cmd.add("utf-8");
@@ -4134,24 +5076,42 @@ public class MainController {
                 }
 
                 boolean needsAutonumber = false;
-                try {
-                    // Probe the would-be output filename with the SAME format selector.
-                    // If it already exists on disk, we switch to autonumber template.
-                    String probed = probeOutputFilename(yt, url, selector, outDir, baseTpl);
-                    if (probed != null && !probed.isBlank()) {
-                        java.nio.file.Path probedPath = java.nio.file.Paths.get(probed.trim());
-                        if (!probedPath.isAbsolute()) probedPath = outDir.resolve(probedPath).normalize();
-                        needsAutonumber = java.nio.file.Files.exists(probedPath);
+                int autonumberStart = 1;
+                java.util.Map<String, Object> tplFields = freshTemplateFields(url);
+                if (tplFields != null) {
+                    // Rendered here from the cached probe against the folder index: no extra spawn.
+                    // The extension is left open because merging/-x decides it later.
+                    FolderIndex index = FolderIndex.shared();
+                    needsAutonumber = index.hasMediaFile(outDir, renderStem(baseTpl, tplFields));
+                    if (needsAutonumber) {
+                        // First free (N); yt-dlp itself would always start at (1)
+                        String numbered = autonumberTemplate(baseTpl);
+                        while (autonumberStart < 10_000) {
+                            tplFields.put("autonumber", autonumberStart);
+                            if (!index.hasMediaFile(outDir, renderStem(numbered, tplFields))) break;
+                            autonumberStart++;
+                        }
+                    }
+                } else {
+                    try {
+                        // Probe the would-be output filename with the SAME format selector.
+                        // If it already exists on disk, we switch to autonumber template.
+                        String probed = probeOutputFilename(yt, url, selector, outDir, baseTpl);
+                        if (probed != null && !probed.isBlank()) {
+                            java.nio.file.Path probedPath = java.nio.file.Paths.get(probed.trim());
+                            if (!probedPath.isAbsolute()) probedPath = outDir.resolve(probedPath).normalize();
+                            needsAutonumber = java.nio.file.Files.exists(probedPath);
+                        }
+                    } catch (Exception ignored) {
+                        needsAutonumber = false;
                     }
-                } catch (Exception ignored) {
-                    needsAutonumber = false;
                 }
 
                 String outTpl;
                 if (needsAutonumber) {
                     // Auto-number duplicates: (1), (2), ... (no leading zeros)
                     cmd.add("--autonumber-start");
-                    cmd.add("1");
+                    cmd.add(String.valueOf(autonumberStart));
                     if (audioOnly) {
                         outTpl = "%(title)s [audio] (%(autonumber)d).%(ext)s";
                     } else {
@@ -4214,7 +5174,12 @@ public class MainController {
                 }
 
 
-                cmd.add(url);
+                if (infoJson != null) {
+                    cmd.add("--load-info-json");
+                    cmd.add(infoJson.toString());
+                } else {
+                    cmd.add(url);
+                }
 
                 Path ffmpeg = com.grabx.app.grabx.util.FfmpegManager.ensureAvailable();
                 if (ffmpeg != null) {
@@ -4229,9 +5194,11 @@ public class MainController {
                 pb.redirectErrorStream(true);
                 pb.environment().putIfAbsent("PYTHONIOENCODING", "utf-8");
 
-                p = pb.start();
+                p = ProcessBudget.shared().start(ProcessBudget.Kind.DOWNLOAD, pb);
 
                 activeProcesses.put(row, p);
+                // Paused/cancelled while waiting for a process slot: nothing was there to kill yet
+                if (stopReasons.containsKey(row)) killProcessTree(p);
 
                 try (java.io.BufferedReader br = new java.io.BufferedReader(
                         new java.io.InputStreamReader(p.getInputStream(), java.nio.charset.StandardCharsets.UTF_8))) {
@@ -4290,6 +5257,10 @@ public class MainController {
                         }
 
                         if (s.startsWith("ERROR:")) lastError[0] = s;
+                        if (FailureClassifier.isDiagnostic(s)) {
+                            if (outputTail.size() == OUTPUT_TAIL_LINES) outputTail.removeFirst();
+                            outputTail.addLast(s);
+                        }
 
                         // capture output path
                         try {
@@ -4460,69 +5431,28 @@ public class MainController {
                     }
                 }
 
-                int code = p.waitFor();
-                String reason = stopReasons.get(row);
-
-                Platform.runLater(() -> {
-                    activeProcesses.remove(row);
-
-                    if ("CANCEL".equals(reason)) {
-                        row.setState(DownloadRow.State.CANCELLED);
-                        updateMissingSidebarItem();
-                        row.status.set("Cancelled");
-                        lastProgressMap.remove(row);
-                        row.size.set("");
-                        row.speed.set("");
-                        row.eta.set("");
-                        return;
-                    }
-
-                    if ("PAUSE".equals(reason)) {
-                        row.setState(DownloadRow.State.PAUSED);
-                        row.status.set("Paused");
-                        lastProgressMap.remove(row);
-                        row.size.set("");
-                        row.speed.set("");
-                        row.eta.set("");
-                        return;
-                    }
-
-                    if (code == 0) {
-                        row.setState(DownloadRow.State.COMPLETED);
-                        try { scheduleHistorySave(); } catch (Exception ignored) {}
-                        // CHANGED: set final size from disk if possible
-                        try {
-                            java.nio.file.Path out = null;
-                            if (row.outputFile != null) out = row.outputFile.get();
-                            if (out != null && java.nio.file.Files.exists(out)) {
-                                long sz = java.nio.file.Files.size(out);
-                                row.size.set(formatBytesDecimal(sz));
-                            } else {
-                                row.size.set("");
-                            }
-                        } catch (Exception ignored) {
-                            row.size.set("");
-                        }
-                        row.progress.set(1.0);
-                        lastProgressMap.put(row, 1.0);
-                        row.speed.set("");
-                        row.eta.set("");
+                // Output is drained (EOF); the terminal state follows the exit, wherever it comes from
+                ProcessSupervisor.shared().watch(p).thenAccept(code -> {
+                    String reason = stopReasons.get(row);
+                    if (code != 0 && reason == null) forgetInfoJson(url);
+
+                    final String failText;
+                    String err = lastError[0];
+                    if (err != null && !err.isBlank()) {
+                        // keep it short on the card
+                        String msg = err;
+                        if (msg.startsWith("ERROR:")) msg = msg.substring("ERROR:".length()).trim();
+                        if (msg.length() > 90) msg = msg.substring(0, 90) + "…";
+                        failText = "Failed: " + msg;
                     } else {
-                        row.setState(DownloadRow.State.FAILED);
-                        String err = lastError[0];
-                        if (err != null && !err.isBlank()) {
-                            // keep it short on the card
-                            String msg = err;
-                            if (msg.startsWith("ERROR:")) msg = msg.substring("ERROR:".length()).trim();
-                            if (msg.length() > 90) msg = msg.substring(0, 90) + "…";
-                            row.status.set("Failed: " + msg);
-                        } else {
-                            row.status.set("Failed (exit " + code + ")");
-                        }
-                        row.size.set("");
-                        row.speed.set("");
-                        row.eta.set("");
+                        failText = "Failed (exit " + code + ")";
                     }
+                    final FailureClassifier.Kind failure = (code == 0) ? null : FailureClassifier.classify(code, outputTail);
+
+                    Platform.runLater(() -> {
+                        activeProcesses.remove(row);
+                        applyTerminalState(row, reason, code == 0, failText, failure);
+                    });
                 });
 
             } catch (Exception ex) {
@@ -4530,6 +5460,7 @@ public class MainController {
                 Platform.runLater(() -> {
                     try { if (fp != null) fp.destroyForcibly(); } catch (Exception ignored) {}
                     activeProcesses.remove(row);
+                    downloadScheduler.release(row);
                     row.setState(DownloadRow.State.FAILED);
                     row.status.set("Failed");
                     row.size.set("");
@@ -4540,6 +5471,864 @@ public class MainController {
         }, "yt-dlp-download").start();
     }
 
+    // Shared end-of-run handling for yt-dlp and native transfers (runs on the FX thread)
+    private void applyTerminalState(DownloadRow row, String reason, boolean ok, String failText) {
+        // Native engines only have their error message to go on
+        FailureClassifier.Kind failure = ok ? null
+                : FailureClassifier.classify(-1, failText == null ? java.util.List.of() : java.util.List.of(failText));
+        applyTerminalState(row, reason, ok, failText, failure);
+    }
+
+    private void applyTerminalState(DownloadRow row, String reason, boolean ok, String failText,
+                                    FailureClassifier.Kind failure) {
+        ytDlpRateByRow.remove(row);
+
+        // Stopped only to pick up a new --limit-rate: start again on the same slot
+        if ("RESTART".equals(reason)) {
+            stopReasons.remove(row);
+            launchDownloadRow(row, true);
+            return;
+        }
+        lastRateRestartAt.remove(row);
+
+        downloadScheduler.release(row);
+        rebalanceBandwidth();
+
+        if ("CANCEL".equals(reason)) {
+            row.setState(DownloadRow.State.CANCELLED);
+            updateMissingSidebarItem();
+            row.status.set("Cancelled");
+            lastProgressMap.remove(row);
+            row.size.set("");
+            row.speed.set("");
+            row.eta.set("");
+            return;
+        }
+
+        if ("PAUSE".equals(reason)) {
+            row.setState(DownloadRow.State.PAUSED);
+            row.status.set("Paused");
+            lastProgressMap.remove(row);
+            row.size.set("");
+            row.speed.set("");
+            row.eta.set("");
+            return;
+        }
+
+        if (ok) {
+            row.retryCount.set(0);
+            row.nextRetryAt.set(0);
+            row.setState(DownloadRow.State.COMPLETED);
+            try { scheduleHistorySave(); } catch (Exception ignored) {}
+            // CHANGED: set final size from disk if possible
+            try {
+                java.nio.file.Path out = null;
+                if (row.outputFile != null) out = row.outputFile.get();
+                if (out != null && java.nio.file.Files.exists(out)) {
+                    long sz = java.nio.file.Files.size(out);
+                    row.size.set(formatBytesDecimal(sz));
+                } else {
+                    row.size.set("");
+                }
+            } catch (Exception ignored) {
+                row.size.set("");
+            }
+            row.progress.set(1.0);
+            lastProgressMap.put(row, 1.0);
+            row.speed.set("");
+            row.eta.set("");
+        } else {
+            // Only network/server trouble says something about how many transfers the link takes
+            if (failure == FailureClassifier.Kind.TRANSIENT) recentFailures.incrementAndGet();
+            if (failure == FailureClassifier.Kind.TRANSIENT && scheduleRetry(row, failText)) return;
+
+            row.nextRetryAt.set(0);
+            row.setState(DownloadRow.State.FAILED);
+            String text = (failText == null || failText.isBlank()) ? "Failed" : failText;
+            int tries = row.retryCount.get();
+            if (tries > 0) text = text.replaceFirst("^Failed", "Failed after " + tries + (tries == 1 ? " retry" : " retries"));
+            row.status.set(text);
+            row.size.set("");
+            row.speed.set("");
+            row.eta.set("");
+        }
+    }
+
+    // Transient failure: back to QUEUED and started again (with --continue) after the backoff.
+    // Pause, cancel or a manual start in the meantime win (the timer checks nextRetryAt).
+    private boolean scheduleRetry(DownloadRow row, String failText) {
+        if (!PREFS.getBoolean(PREF_AUTO_RETRY, true)) return false;
+        int attempt = row.retryCount.get() + 1;
+        int max = Math.max(1, PREFS.getInt(PREF_RETRY_MAX, DEFAULT_RETRY_MAX));
+        if (attempt > max) return false;
+
+        long delay = FailureClassifier.backoffMillis(attempt, RETRY_BASE_MS, RETRY_CAP_MS);
+        long at = System.currentTimeMillis() + delay;
+        row.retryCount.set(attempt);
+        row.nextRetryAt.set(at);
+
+        String why = (failText == null) ? "" : failText.replaceFirst("^Failed:?\\s*", "");
+        String when = java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss")
+                .format(java.time.Instant.ofEpochMilli(at).atZone(java.time.ZoneId.systemDefault()));
+        row.setState(DownloadRow.State.QUEUED);
+        row.status.set("Retry " + attempt + "/" + max + " at " + when + (why.isBlank() ? "" : " · " + why));
+        row.speed.set("");
+        row.eta.set("");
+
+        UI_DELAY_EXEC.schedule(() -> Platform.runLater(() -> {
+            if (row.nextRetryAt.get() != at || row.state.get() != DownloadRow.State.QUEUED) return;
+            row.nextRetryAt.set(0);
+            startDownloadRow(row, true);
+        }), delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private static boolean isDirectRow(DownloadRow row) {
+        return row != null && MODE_DIRECT.equals(row.mode);
+    }
+
+    // ========= Direct files (native segmented engine) =========
+    private void startDirectDownloadRow(DownloadRow row, boolean resume) {
+        DownloadService.Job existing = activeDirectJobs.get(row);
+        if (existing != null && !existing.isStopped()) return;
+
+        stopReasons.remove(row);
+
+        final DownloadService.Job job = new DownloadService.Job();
+        job.setRateLimit(row.rateLimit.get());
+
+        // SHA-256 is always recorded; the expected hash adds its own algorithm (picked by length)
+        final String expectedHex = StreamingHasher.normalizeHex(row.expectedHash.get());
+        final StreamingHasher.Algorithm expectedAlg = StreamingHasher.Algorithm.forHex(expectedHex);
+        job.requestDigests(java.util.EnumSet.of(StreamingHasher.Algorithm.SHA256));
+        if (expectedAlg != null) job.expectDigest(expectedAlg, expectedHex);
+        activeDirectJobs.put(row, job);
+
+        Platform.runLater(() -> {
+            row.setState(DownloadRow.State.DOWNLOADING);
+            row.status.set("Preparing");
+            row.size.set("");
+            row.speed.set("");
+            row.eta.set("");
+            row.progress.set(-1);
+        });
+
+        new Thread(() -> {
+            boolean ok = false;
+            boolean hashVerified = false;
+            String failText = null;
+
+            try {
+                java.nio.file.Path outDir = java.nio.file.Paths.get(row.folder);
+                java.nio.file.Files.createDirectories(outDir);
+
+                Platform.runLater(() -> row.status.set("Connecting"));
+                DownloadService.RemoteInfo info = directDownloadService.probe(row.url);
+
+                // HLS/DASH: fetch the fragments instead of saving the playlist text
+                if (StreamManifest.looksLikeManifest(row.url) || StreamManifest.looksLikeManifest(info.finalUrl)) {
+                    downloadStreamRow(row, job, info.finalUrl, outDir);
+                    ok = true;
+                } else {
+                    // Race the mirrors; only the ones that serve the same bytes are kept
+                    String mirrorText = row.mirrors.get();
+                    if (mirrorText != null && !mirrorText.isBlank()) {
+                        Platform.runLater(() -> row.status.set("Checking mirrors"));
+                        java.util.List<String> rejected = new java.util.ArrayList<>();
+                        MirrorSet set = directDownloadService.probeMirrors(
+                                info, java.util.Arrays.asList(mirrorText.trim().split("\\s+")), rejected);
+                        job.useMirrors(set);
+                        if (!rejected.isEmpty()) {
+                            final String msg = "Skipped " + rejected.size() + " mirror(s): " + shorten(rejected.get(0));
+                            Platform.runLater(() -> { if (statusText != null) statusText.setText(msg); });
+                        }
+                    }
+
+                    // Keep the name picked on a previous run so a resume writes to the same file
+                    java.nio.file.Path target = row.outputFile.get();
+                    if (target == null || java.nio.file.Files.exists(target)) {
+                        target = DownloadService.uniqueTarget(outDir, info.fileName);
+                    }
+
+                    final java.nio.file.Path fTarget = target;
+                    final String name = (target.getFileName() == null) ? info.fileName : target.getFileName().toString();
+                    Platform.runLater(() -> {
+                        try { row.outputFile.set(fTarget); } catch (Exception ignored) {}
+                        row.setTitleOnce(name);
+                        if (info.length > 0) row.totalBytes.set(info.length);
+                        if (row.progress.get() < 0) row.progress.set(0);
+                    });
+
+                    directDownloadService.download(info, target, job, new DownloadService.Listener() {
+                        @Override
+                        public void onStatus(String status) {
+                            Platform.runLater(() -> row.status.set(status));
+                        }
+
+                        @Override
+                        public void onProgress(long downloaded, long total, long bytesPerSecond) {
+                            row.downloadedBytes.set(Math.max(0, downloaded));
+                            row.totalBytes.set(total > 0 ? total : -1);
+
+                            final String sizeText = (total > 0)
+                                    ? formatBytesDecimal(downloaded) + " / " + formatBytesDecimal(total)
+                                    : (downloaded > 0 ? formatBytesDecimal(downloaded) : "");
+                            final String spd = bytesPerSecond > 0 ? formatBytesDecimal(bytesPerSecond) + "/s" : "";
+                            final String et = (total > 0 && bytesPerSecond > 0)
+                                    ? formatEtaSeconds((total - downloaded) / bytesPerSecond)
+                                    : "";
+                            final double pct = (total > 0) ? (double) downloaded / (double) total : -1;
+
+                            Platform.runLater(() -> {
+                                row.size.set(sizeText);
+                                if (pct >= 0) applyProgressMonotonic(row, pct);
+                                row.speed.set(spd);
+                                row.eta.set(et);
+                            });
+                        }
+                    });
+                    ok = true;
+
+                    hashVerified = expectedAlg != null;
+
+                    String sha = job.getDigests().get(StreamingHasher.Algorithm.SHA256);
+                    if (sha != null) Platform.runLater(() -> row.checksum.set("sha256:" + sha));
+                }
+
+            } catch (DownloadService.StoppedException stopped) {
+                // pause/cancel: stopReasons decides the final state
+            } catch (DownloadService.ChecksumMismatchException bad) {
+                // download() deleted the .part; nothing is left under the final name
+                failText = bad.getMessage();
+            } catch (FragmentDownloader.LiveStreamException live) {
+                // yt-dlp records live playlists until they end; hand the row over on the same slot
+                Platform.runLater(() -> {
+                    if (!activeDirectJobs.remove(row, job)) return;
+                    row.status.set("Live stream: using yt-dlp");
+                    launchYtDlpRow(row, resume);
+                });
+                return;
+            } catch (Exception ex) {
+                String msg = (ex.getMessage() == null || ex.getMessage().isBlank())
+                        ? ex.getClass().getSimpleName()
+                        : ex.getMessage();
+                if (msg.length() > 90) msg = msg.substring(0, 90) + "…";
+                failText = "Failed: " + msg;
+            }
+
+            final boolean fOk = ok;
+            final boolean fVerified = hashVerified;
+            final String fFail = failText;
+            final String reason = stopReasons.get(row);
+            Platform.runLater(() -> {
+                // A resume may already have replaced this job; only the current run reports
+                if (!activeDirectJobs.remove(row, job)) return;
+                applyTerminalState(row, reason, fOk && reason == null, fFail);
+                if (fVerified && reason == null) row.status.set("Completed · hash OK");
+            });
+        }, "grabx-direct-download").start();
+    }
+
+    // http(s) URLs from the mirrors box, space separated, without the primary URL or duplicates
+    private String parseMirrorUrls(String text, String primary) {
+        if (text == null || text.isBlank()) return "";
+        java.util.LinkedHashSet<String> out = new java.util.LinkedHashSet<>();
+        for (String u : text.trim().split("\\s+")) {
+            if (isHttpUrl(u) && !u.equals(primary)) out.add(u);
+        }
+        return String.join(" ", out);
+    }
+
+    // ========= Hybrid: yt-dlp resolves the media URLs, the native engine transfers =========
+    private void startHybridDownloadRow(DownloadRow row, boolean resume) {
+        DownloadService.Job existing = activeDirectJobs.get(row);
+        if (existing != null && !existing.isStopped()) return;
+
+        stopReasons.remove(row);
+
+        final DownloadService.Job job = new DownloadService.Job();
+        job.setRateLimit(row.rateLimit.get());
+        activeDirectJobs.put(row, job);
+
+        Platform.runLater(() -> {
+            row.setState(DownloadRow.State.DOWNLOADING);
+            row.status.set("Resolving");
+            row.size.set("");
+            row.speed.set("");
+            row.eta.set("");
+            row.progress.set(-1);
+        });
+
+        new Thread(() -> {
+            boolean ok = false;
+            String failText = null;
+            HybridPlan plan = null;
+
+            try {
+                java.nio.file.Path outDir = java.nio.file.Paths.get(row.folder);
+                java.nio.file.Files.createDirectories(outDir);
+
+                plan = resolveHybridPlan(row, outDir);
+                if (job.isStopped()) throw new DownloadService.StoppedException();
+
+                // Without the hybrid setting only split video+audio pairs are taken over
+                boolean take = plan.isEligible()
+                        && (plan.streams.size() == 2 || PREFS.getBoolean(PREF_HYBRID_TRANSFER, false));
+                if (!take) {
+                    // Live, DRM, other protocols, or single formats without the hybrid setting:
+                    // yt-dlp downloads them itself, on the same slot
+                    Platform.runLater(() -> {
+                        if (activeDirectJobs.remove(row, job)) launchYtDlpRow(row, resume);
+                    });
+                    return;
+                }
+
+                downloadHybridPlan(row, job, plan, outDir);
+                ok = true;
+
+            } catch (DownloadService.StoppedException stopped) {
+                // pause/cancel: stopReasons decides the final state
+            } catch (Exception ex) {
+                String msg = (ex.getMessage() == null || ex.getMessage().isBlank())
+                        ? ex.getClass().getSimpleName()
+                        : ex.getMessage();
+                if (msg.length() > 90) msg = msg.substring(0, 90) + "…";
+                failText = "Failed: " + msg;
+                forgetInfoJson(row.url);
+
+                // The transfer failed (e.g. a 403 on the media URL): yt-dlp gets a go with a fresh extraction
+                if (plan != null && stopReasons.get(row) == null) {
+                    discardNativeParts(plan, row.outputFile.get());
+                    Platform.runLater(() -> {
+                        if (!activeDirectJobs.remove(row, job)) return;
+                        row.status.set("Retrying with yt-dlp");
+                        launchYtDlpRow(row, resume);
+                    });
+                    return;
+                }
+            }
+
+            final boolean fOk = ok;
+            final String fFail = failText;
+            final String reason = stopReasons.get(row);
+            Platform.runLater(() -> {
+                if (!activeDirectJobs.remove(row, job)) return;
+                applyTerminalState(row, reason, fOk && reason == null, fFail);
+            });
+        }, "grabx-hybrid-download").start();
+    }
+
+    // The native .part files carry yt-dlp's own names and are preallocated to full size:
+    // --continue would take them for finished bytes. Completed stream files are valid and kept.
+    private static void discardNativeParts(HybridPlan plan, java.nio.file.Path target) {
+        if (plan == null || target == null) return;
+        String name = target.getFileName().toString();
+        String stem = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+
+        java.util.List<java.nio.file.Path> files = new java.util.ArrayList<>();
+        files.add(target);
+        for (HybridPlan.Stream s : plan.streams) files.add(target.resolveSibling(stem + ".f" + s.formatId + "." + s.ext));
+        for (java.nio.file.Path f : files) {
+            java.nio.file.Path part = DownloadService.partPathFor(f);
+            try { java.nio.file.Files.deleteIfExists(part); } catch (Exception ignored) {}
+            ResumeJournal.delete(ResumeJournal.pathFor(part));
+            ResumeJournal.delete(part.resolveSibling(part.getFileName() + ".frag")); // fragment engine state
+        }
+    }
+
+    // Same selector, client and output template as the yt-dlp path, but -J only
+    private HybridPlan resolveHybridPlan(DownloadRow row, java.nio.file.Path outDir) throws Exception {
+        int h = parseHeightFromLabel(row.quality);
+        String selector = (h > 0) ? "bv*[height<=" + h + "]+ba/b[height<=" + h + "]/best" : "bv*+ba/best";
+        String tpl = (h > 0) ? "%(title)s [" + h + "p].%(ext)s" : "%(title)s [%(height)sp].%(ext)s";
+
+        java.util.List<String> args = new java.util.ArrayList<>(java.util.List.of(
+                "-J",
+                "--no-playlist",
+                "--no-warnings",
+                "--encoding", "utf-8",
+                "-f", selector,
+                "-o", outDir.resolve(tpl).toString()
+        ));
+        java.nio.file.Path infoJson = freshInfoJsonFile(row.url);
+        if (infoJson != null) {
+            args.add("--load-info-json");
+            args.add(infoJson.toString());
+        } else {
+            args.addAll(java.util.List.of(
+                    "--user-agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36",
+                    "--referer", "https://www.youtube.com/",
+                    "--extractor-args", "youtube:player_client=android",
+                    row.url));
+        }
+        String json = com.grabx.app.grabx.util.YtDlpManager.run(args);
+        HybridPlan plan = HybridPlan.parse(json);
+        // If the plan is handed back to yt-dlp, it replays this dump instead of extracting again
+        if (infoJson == null) rememberInfoJson(row.url, json);
+        return plan;
+    }
+
+    private void downloadHybridPlan(DownloadRow row, DownloadService.Job job, HybridPlan plan,
+                                    java.nio.file.Path outDir) throws Exception {
+        String fileName = null;
+        if (plan.filename != null) {
+            java.nio.file.Path fn = java.nio.file.Paths.get(plan.filename).getFileName();
+            if (fn != null) fileName = fn.toString();
+        }
+        if (fileName == null) {
+            String t = (plan.title == null) ? "video" : plan.title.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+            fileName = t + "." + (plan.ext == null ? "mp4" : plan.ext);
+        }
+
+        // Keep the name from a previous run so the .part files are picked up again
+        java.nio.file.Path target = row.outputFile.get();
+        if (target == null || java.nio.file.Files.exists(target)) {
+            target = DownloadService.uniqueTarget(outDir, fileName);
+        }
+        final java.nio.file.Path fTarget = target;
+        final String title = (plan.title == null || plan.title.isBlank()) ? fileName : plan.title;
+        Platform.runLater(() -> {
+            try { row.outputFile.set(fTarget); } catch (Exception ignored) {}
+            row.setTitleOnce(title);
+            if (row.progress.get() < 0) row.progress.set(0);
+        });
+
+        int n = plan.streams.size();
+        HybridProgress progress = new HybridProgress(row, n);
+        for (int i = 0; i < n; i++) progress.total[i] = plan.streams.get(i).sizeHint;
+
+        String name = target.getFileName().toString();
+        String stem = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+
+        if (n == 1) {
+            HybridPlan.Stream s = plan.streams.get(0);
+            if (s.isProgressiveHttp()) {
+                DownloadService.RemoteInfo info = directDownloadService.probe(s.url, s.headers);
+                directDownloadService.download(info, target, job, progress.listener(0));
+                return;
+            }
+            StreamManifest.Media media = fragmentMedia(s);
+            String targetExt = name.lastIndexOf('.') > 0 ? name.substring(name.lastIndexOf('.') + 1) : "";
+            if (media.extension.equalsIgnoreCase(targetExt)) {
+                directDownloadService.downloadStream(media, s.headers, target, job, progress.fragments(0));
+                return;
+            }
+            // MPEG-TS fragments under an .mp4 name: fetch to a side file, then remux like yt-dlp's FixupM3u8
+            java.nio.file.Path part = target.resolveSibling(stem + ".f" + s.formatId + "." + s.ext);
+            if (!java.nio.file.Files.exists(part)) {
+                directDownloadService.downloadStream(media, s.headers, part, job, progress.fragments(0));
+            }
+            Platform.runLater(() -> row.status.set("Remuxing"));
+            muxStreamCopy(part, null, target);
+            try { java.nio.file.Files.deleteIfExists(part); } catch (Exception ignored) {}
+            return;
+        }
+
+        // FIFOs are a POSIX thing; Windows keeps the part files. Fragmented streams always use part files.
+        boolean windows = System.getProperty("os.name", "").toLowerCase(java.util.Locale.ROOT).contains("win");
+        if (PREFS.getBoolean(PREF_PIPE_MERGE, false) && !windows && plan.isProgressive()) {
+            pipeMergeStreams(row, job, plan, target, progress);
+            return;
+        }
+
+        // Video + audio: both streams at once, each to its own .fNNN file, then a stream-copy merge.
+        // They share the row's Job (pause/cancel and the row cap cover both); no digests or mirrors here.
+        java.nio.file.Path[] parts = new java.nio.file.Path[n];
+        Exception[] errors = new Exception[n];
+        Thread[] workers = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            final int idx = i;
+            final HybridPlan.Stream s = plan.streams.get(i);
+            final java.nio.file.Path part = target.resolveSibling(stem + ".f" + s.formatId + "." + s.ext);
+            parts[i] = part;
+            if (java.nio.file.Files.exists(part)) {
+                progress.completed(i, java.nio.file.Files.size(part));
+                continue;
+            }
+            workers[i] = new Thread(() -> {
+                try {
+                    if (s.isProgressiveHttp()) {
+                        DownloadService.RemoteInfo info = directDownloadService.probe(s.url, s.headers);
+                        directDownloadService.download(info, part, job, progress.listener(idx));
+                    } else {
+                        directDownloadService.downloadStream(fragmentMedia(s), s.headers, part, job, progress.fragments(idx));
+                    }
+                } catch (Exception ex) {
+                    errors[idx] = ex;
+                    if (!(ex instanceof DownloadService.StoppedException)) job.stop(); // no point finishing the other one
+                }
+            }, "grabx-hybrid-stream-" + i);
+            workers[i].start();
+        }
+        for (Thread w : workers) {
+            if (w != null) w.join();
+        }
+        // A real failure wins over the StoppedException it caused in the other stream
+        Exception stoppedOnly = null;
+        for (Exception e : errors) {
+            if (e == null) continue;
+            if (!(e instanceof DownloadService.StoppedException)) throw e;
+            stoppedOnly = e;
+        }
+        if (stoppedOnly != null) throw stoppedOnly;
+
+        java.nio.file.Path videoPart = null;
+        java.nio.file.Path audioPart = null;
+        for (int i = 0; i < n; i++) {
+            if (plan.streams.get(i).hasVideo && videoPart == null) videoPart = parts[i];
+            else audioPart = parts[i];
+        }
+        if (videoPart == null || audioPart == null) throw new java.io.IOException("Expected one video and one audio stream");
+
+        Platform.runLater(() -> row.status.set("Merging"));
+        muxStreamCopy(videoPart, audioPart, target);
+        try { java.nio.file.Files.deleteIfExists(videoPart); } catch (Exception ignored) {}
+        try { java.nio.file.Files.deleteIfExists(audioPart); } catch (Exception ignored) {}
+    }
+
+    // Both streams go straight from the network into "ffmpeg -c copy" through named pipes.
+    // Nothing to resume from: a pause or failure discards the output and the next run starts over.
+    private void pipeMergeStreams(DownloadRow row, DownloadService.Job job, HybridPlan plan,
+                                  java.nio.file.Path target, HybridProgress progress) throws Exception {
+        java.nio.file.Path ffmpeg = com.grabx.app.grabx.util.FfmpegManager.ensureAvailable();
+        if (ffmpeg == null) throw new java.io.IOException("ffmpeg is needed to merge audio and video");
+
+        int v = plan.streams.get(0).hasVideo ? 0 : 1;
+        int a = 1 - v;
+
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        // Keeps the real extension so ffmpeg picks the container from it
+        java.nio.file.Path muxing = target.resolveSibling(
+                (dot > 0 ? name.substring(0, dot) : name) + ".muxing" + (dot > 0 ? name.substring(dot) : ""));
+
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("grabx-mux");
+        java.nio.file.Path[] fifos = { dir.resolve("s0"), dir.resolve("s1") };
+        Process ff = null;
+        try {
+            for (java.nio.file.Path f : fifos) {
+                Process mk = new ProcessBuilder("mkfifo", f.toString()).redirectErrorStream(true).start();
+                mk.getInputStream().readAllBytes();
+                if (mk.waitFor() != 0) throw new java.io.IOException("mkfifo failed");
+            }
+
+            java.util.List<String> cmd = java.util.List.of(
+                    ffmpeg.toAbsolutePath().toString(), "-y", "-v", "error",
+                    "-i", fifos[v].toString(), "-i", fifos[a].toString(),
+                    "-map", "0:v:0?", "-map", "1:a:0", "-c", "copy",
+                    muxing.toString());
+            // ffmpeg is in the transfer's data path here, not a post-processing step
+            final Process proc = ProcessBudget.shared().start(ProcessBudget.Kind.FFMPEG, ProcessPriority.TRANSFER,
+                    new ProcessBuilder(cmd).redirectErrorStream(true));
+            ff = proc;
+
+            // A writer still blocked in open() would hang forever once ffmpeg is gone;
+            // an O_RDWR open never blocks on a FIFO and releases it (its next write gets EPIPE)
+            proc.onExit().thenRun(() -> {
+                for (java.nio.file.Path f : fifos) {
+                    try (java.nio.channels.FileChannel c = java.nio.channels.FileChannel.open(f,
+                            java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE)) {
+                    } catch (Exception ignored) {}
+                }
+            });
+
+            StringBuilder log = new StringBuilder();
+            Thread drain = new Thread(() -> {
+                try (java.io.BufferedReader br = new java.io.BufferedReader(new java.io.InputStreamReader(
+                        proc.getInputStream(), java.nio.charset.StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        synchronized (log) {
+                            if (log.length() == 0 && !line.isBlank()) log.append(line.trim());
+                        }
+                    }
+                } catch (Exception ignored) {}
+            }, "grabx-mux-log");
+            drain.setDaemon(true);
+            drain.start();
+
+            Exception[] errors = new Exception[2];
+            Thread[] workers = new Thread[2];
+            for (int i = 0; i < 2; i++) {
+                final int idx = i;
+                final HybridPlan.Stream s = plan.streams.get(i);
+                final java.nio.file.Path fifo = fifos[i];
+                workers[i] = new Thread(() -> {
+                    try {
+                        DownloadService.RemoteInfo info = directDownloadService.probe(s.url, s.headers);
+                        try (java.io.OutputStream out = new java.io.BufferedOutputStream(
+                                java.nio.file.Files.newOutputStream(fifo), 256 * 1024)) {
+                            directDownloadService.streamTo(info, out, job, progress.listener(idx));
+                        }
+                    } catch (Exception ex) {
+                        errors[idx] = ex;
+                        // Without this input ffmpeg would finish a truncated file
+                        proc.destroyForcibly();
+                        if (!(ex instanceof DownloadService.StoppedException)) job.stop();
+                    }
+                }, "grabx-pipe-stream-" + i);
+                workers[i].start();
+            }
+            for (Thread w : workers) w.join();
+
+            Platform.runLater(() -> row.status.set("Finalizing"));
+            int code = proc.waitFor();
+            drain.join(2000);
+
+            Exception stoppedOnly = null;
+            for (Exception e : errors) {
+                if (e == null) continue;
+                if (!(e instanceof DownloadService.StoppedException)) throw e;
+                stoppedOnly = e;
+            }
+            if (stoppedOnly != null || job.isStopped()) throw new DownloadService.StoppedException();
+            if (code != 0) {
+                String first;
+                synchronized (log) { first = log.toString(); }
+                throw new java.io.IOException("Merge failed" + (first.isEmpty() ? "" : ": " + first));
+            }
+
+            try {
+                java.nio.file.Files.move(muxing, target, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                java.nio.file.Files.move(muxing, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (ff != null && ff.isAlive()) ff.destroyForcibly();
+            try { java.nio.file.Files.deleteIfExists(muxing); } catch (Exception ignored) {}
+            for (java.nio.file.Path f : fifos) {
+                try { java.nio.file.Files.deleteIfExists(f); } catch (Exception ignored) {}
+            }
+            try { java.nio.file.Files.deleteIfExists(dir); } catch (Exception ignored) {}
+        }
+    }
+
+    // Combined bytes/total across the streams of one hybrid row
+    private final class HybridProgress {
+        final DownloadRow row;
+        final long[] done;
+        final long[] total;
+        final long[] speed;
+
+        HybridProgress(DownloadRow row, int streams) {
+            this.row = row;
+            this.done = new long[streams];
+            this.total = new long[streams];
+            this.speed = new long[streams];
+        }
+
+        synchronized void completed(int i, long bytes) {
+            done[i] = bytes;
+            total[i] = bytes;
+            speed[i] = 0;
+        }
+
+        DownloadService.Listener listener(int i) {
+            return new DownloadService.Listener() {
+                @Override
+                public void onStatus(String status) {
+                    Platform.runLater(() -> row.status.set(status));
+                }
+
+                @Override
+                public void onProgress(long downloaded, long totalBytes, long bytesPerSecond) {
+                    update(i, downloaded, totalBytes, bytesPerSecond);
+                }
+            };
+        }
+
+        // HLS/DASH: no byte total, so yt-dlp's size hint or an estimate from the fragments done so far
+        FragmentDownloader.Listener fragments(int i) {
+            final long hint = total[i];
+            return new FragmentDownloader.Listener() {
+                @Override
+                public void onStatus(String status) {
+                    Platform.runLater(() -> row.status.set(status));
+                }
+
+                @Override
+                public void onFragment(int doneFragments, int count, long bytes, long bytesPerSecond) {
+                    long estimate = hint;
+                    if (estimate <= 0 && doneFragments > 0) estimate = bytes * count / doneFragments;
+                    if (doneFragments >= count) estimate = bytes;
+                    update(i, bytes, Math.max(estimate, bytes), bytesPerSecond);
+                }
+            };
+        }
+
+        private void update(int i, long downloaded, long totalBytes, long bytesPerSecond) {
+            long d = 0, t = 0, s = 0;
+            boolean known = true;
+            synchronized (this) {
+                done[i] = Math.max(0, downloaded);
+                if (totalBytes > 0) total[i] = totalBytes;
+                speed[i] = Math.max(0, bytesPerSecond);
+                for (int k = 0; k < done.length; k++) {
+                    d += done[k];
+                    s += speed[k];
+                    if (total[k] > 0) t += total[k];
+                    else known = false;
+                }
+            }
+            row.downloadedBytes.set(d);
+            row.totalBytes.set(known ? t : -1);
+
+            final String sizeText = known
+                    ? formatBytesDecimal(d) + " / " + formatBytesDecimal(t)
+                    : formatBytesDecimal(d);
+            final String spd = s > 0 ? formatBytesDecimal(s) + "/s" : "";
+            final String et = (known && s > 0) ? formatEtaSeconds(Math.max(0, t - d) / s) : "";
+            final double pct = (known && t > 0) ? (double) d / (double) t : -1;
+            Platform.runLater(() -> {
+                row.size.set(sizeText);
+                if (pct >= 0) applyProgressMonotonic(row, pct);
+                row.speed.set(spd);
+                row.eta.set(et);
+            });
+        }
+    }
+
+    // ========= HLS / DASH (native fragment engine) =========
+    private void downloadStreamRow(DownloadRow row, DownloadService.Job job, String manifestUrl,
+                                   java.nio.file.Path outDir) throws Exception {
+        Platform.runLater(() -> row.status.set("Preparing stream"));
+
+        FragmentDownloader fetcher = new FragmentDownloader(FragmentDownloader.sharedClient(), 1, 2);
+        java.net.URI base = java.net.URI.create(manifestUrl);
+        StreamManifest manifest = StreamManifest.parse(base, fetcher.fetchText(base));
+
+        int maxHeight = Math.max(0, parseHeightFromLabel(row.quality));
+        StreamManifest.Variant video = manifest.pickVariant(maxHeight);
+        StreamManifest.Variant audio = video.audioOnly ? null : manifest.pickAudio(video);
+        loadStreamMedia(fetcher, video);
+        loadStreamMedia(fetcher, audio);
+        if (video.media.live || (audio != null && audio.media.live)) throw new FragmentDownloader.LiveStreamException();
+
+        // Output name: manifest file name without ".m3u8"/".mpd"
+        String path = base.getPath() == null ? "" : base.getPath();
+        String stem = path.substring(path.lastIndexOf('/') + 1);
+        if (stem.lastIndexOf('.') > 0) stem = stem.substring(0, stem.lastIndexOf('.'));
+        if (stem.isBlank() || stem.equalsIgnoreCase("master") || stem.equalsIgnoreCase("index") || stem.equalsIgnoreCase("manifest")) {
+            stem = "stream";
+        }
+        boolean webm = "webm".equals(video.media.extension);
+        String ext = (audio == null) ? video.media.extension : (webm ? "mkv" : "mp4");
+
+        java.nio.file.Path target = row.outputFile.get();
+        if (target == null || java.nio.file.Files.exists(target)) {
+            target = DownloadService.uniqueTarget(outDir, stem + "." + ext);
+        }
+        final java.nio.file.Path fTarget = target;
+        final String name = (target.getFileName() == null) ? stem : target.getFileName().toString();
+        Platform.runLater(() -> {
+            try { row.outputFile.set(fTarget); } catch (Exception ignored) {}
+            row.setTitleOnce(name);
+            if (row.progress.get() < 0) row.progress.set(0);
+        });
+
+        if (audio == null) {
+            directDownloadService.downloadStream(video.media, target, job, fragmentListener(row, 0, video.media.all().size()));
+            return;
+        }
+
+        // Separate audio: both renditions to sidecar files, then a stream-copy merge
+        int vCount = video.media.all().size();
+        int total = vCount + audio.media.all().size();
+        java.nio.file.Path vPart = target.resolveSibling(name + ".video." + video.media.extension);
+        java.nio.file.Path aPart = target.resolveSibling(name + ".audio." + audio.media.extension);
+        // A finished rendition has no fragment state left: skip it rather than fetching it again
+        if (!java.nio.file.Files.exists(vPart)) {
+            directDownloadService.downloadStream(video.media, vPart, job, fragmentListener(row, 0, total));
+        }
+        if (!java.nio.file.Files.exists(aPart)) {
+            directDownloadService.downloadStream(audio.media, aPart, job, fragmentListener(row, vCount, total));
+        }
+
+        Platform.runLater(() -> row.status.set("Merging"));
+        muxStreamCopy(vPart, aPart, target);
+        try { java.nio.file.Files.deleteIfExists(vPart); } catch (Exception ignored) {}
+        try { java.nio.file.Files.deleteIfExists(aPart); } catch (Exception ignored) {}
+    }
+
+    private static void loadStreamMedia(FragmentDownloader fetcher, StreamManifest.Variant v) throws Exception {
+        if (v == null || v.media != null) return;
+        v.media = HlsParser.parseMedia(v.playlist, fetcher.fetchText(v.playlist));
+    }
+
+    // One yt-dlp format on the fragment engine: DASH lists come with the plan, HLS playlists are fetched
+    private static StreamManifest.Media fragmentMedia(HybridPlan.Stream s) throws Exception {
+        if (s.isDash()) return s.dashMedia();
+
+        FragmentDownloader fetcher = new FragmentDownloader(FragmentDownloader.sharedClient(), 1, 2, s.headers);
+        java.net.URI uri = java.net.URI.create(s.url);
+        String text = fetcher.fetchText(uri);
+        // yt-dlp's format URL is the variant's media playlist; a master here means it picked nothing specific
+        if (text.contains("#EXT-X-STREAM-INF")) throw new java.io.IOException("Expected an HLS media playlist");
+        return HlsParser.parseMedia(uri, text);
+    }
+
+    // Progress is per fragment; "offset" fragments of an earlier rendition count as done
+    private FragmentDownloader.Listener fragmentListener(DownloadRow row, int offset, int total) {
+        return new FragmentDownloader.Listener() {
+            @Override
+            public void onStatus(String status) {
+                Platform.runLater(() -> row.status.set(status));
+            }
+
+            @Override
+            public void onFragment(int done, int count, long bytes, long bytesPerSecond) {
+                row.downloadedBytes.set(Math.max(0, bytes));
+                final int doneAll = offset + done;
+                final double pct = total > 0 ? (double) doneAll / (double) total : -1;
+                final String spd = bytesPerSecond > 0 ? formatBytesDecimal(bytesPerSecond) + "/s" : "";
+                final String sizeText = (bytes > 0 ? formatBytesDecimal(bytes) + " · " : "")
+                        + "fragment " + doneAll + "/" + total;
+                Platform.runLater(() -> {
+                    row.size.set(sizeText);
+                    if (pct >= 0) applyProgressMonotonic(row, pct);
+                    row.speed.set(spd);
+                    row.eta.set("");
+                });
+            }
+        };
+    }
+
+    // audio == null: remux the one input into out's container (e.g. MPEG-TS fragments into .mp4)
+    private static void muxStreamCopy(java.nio.file.Path video, java.nio.file.Path audio, java.nio.file.Path out)
+            throws java.io.IOException, InterruptedException {
+        java.nio.file.Path ffmpeg = com.grabx.app.grabx.util.FfmpegManager.ensureAvailable();
+        if (ffmpeg == null) throw new java.io.IOException("ffmpeg is needed to merge audio and video");
+
+        java.util.List<String> cmd = (audio == null)
+                ? java.util.List.of(
+                        ffmpeg.toAbsolutePath().toString(), "-y", "-v", "error",
+                        "-i", video.toString(),
+                        "-map", "0:v?", "-map", "0:a?", "-c", "copy",
+                        out.toString())
+                : java.util.List.of(
+                        ffmpeg.toAbsolutePath().toString(), "-y", "-v", "error",
+                        "-i", video.toString(), "-i", audio.toString(),
+                        "-map", "0:v:0?", "-map", "1:a:0", "-c", "copy",
+                        out.toString());
+        Process p = ProcessBudget.shared().start(ProcessBudget.Kind.FFMPEG,
+                new ProcessBuilder(cmd).redirectErrorStream(true));
+        String log = new String(p.getInputStream().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8).trim();
+        if (p.waitFor() != 0) {
+            try { java.nio.file.Files.deleteIfExists(out); } catch (Exception ignored) {}
+            throw new java.io.IOException("Merge failed" + (log.isEmpty() ? "" : ": " + log.lines().findFirst().orElse("")));
+        }
+    }
+
+    // "00:42" / "12:05" / "1:02:03" like yt-dlp's ETA column
+    private static String formatEtaSeconds(long seconds) {
+        if (seconds < 0) return "";
+        long h = seconds / 3600;
+        long m = (seconds % 3600) / 60;
+        long sec = seconds % 60;
+        if (h > 0) return String.format(java.util.Locale.US, "%d:%02d:%02d", h, m, sec);
+        return String.format(java.util.Locale.US, "%02d:%02d", m, sec);
+    }
+
     private static boolean supportsAudioThumbnailEmbedding(String fmt) {
         if (fmt == null) return false;
         String f = fmt.trim().toLowerCase(java.util.Locale.ROOT);
@@ -4574,13 +6363,16 @@ public class MainController {
             probe.add("--skip-download");
             probe.add("--encoding"); probe.add("utf-8");
 
-            // keep the same anti-403 args as the real download
-            probe.add("--user-agent");
-            probe.add("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36");
-            probe.add("--referer");
-            probe.add("https://www.youtube.com/");
-            probe.add("--extractor-args");
-            probe.add("youtube:player_client=android");
+            java.nio.file.Path infoJson = freshInfoJsonFile(url);
+            if (infoJson == null) {
+                // keep the same anti-403 args as the real download
+                probe.add("--user-agent");
+                probe.add("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36");
+                probe.add("--referer");
+                probe.add("https://www.youtube.com/");
+                probe.add("--extractor-args");
+                probe.add("youtube:player_client=android");
+            }
 
             probe.add("-f");
             probe.add(selector);
@@ -4592,11 +6384,15 @@ public class MainController {
             probe.add("--print");
             probe.add("filename");
 
-            probe.add(url.trim());
+            if (infoJson != null) {
+                probe.add("--load-info-json");
+                probe.add(infoJson.toString());
+            } else {
+                probe.add(url.trim());
+            }
 
-            Process p = new ProcessBuilder(probe)
-                    .redirectErrorStream(true)
-                    .start();
+            Process p = ProcessBudget.shared().start(ProcessBudget.Kind.PROBE,
+                    new ProcessBuilder(probe).redirectErrorStream(true));
 
             String line;
             try (java.io.BufferedReader br = new java.io.BufferedReader(
@@ -4614,6 +6410,26 @@ public class MainController {
         }
     }
 
+    // Template fields from a fresh Add Link probe, or null (then the yt-dlp filename probe is used)
+    private static java.util.Map<String, Object> freshTemplateFields(String url) {
+        if (url == null) return null;
+        InfoJson e = INFO_JSON_CACHE.get(url.trim());
+        if (e == null || !e.isFresh()) return null;
+        return OutputTemplateRenderer.fieldsFromInfoJson(e.json);
+    }
+
+    // "%(title)s [720p].%(ext)s" -> rendered "Title [720p]"
+    private static String renderStem(String tpl, java.util.Map<String, Object> fields) {
+        String t = tpl.endsWith(".%(ext)s") ? tpl.substring(0, tpl.length() - ".%(ext)s".length()) : tpl;
+        return OutputTemplateRenderer.render(t, fields);
+    }
+
+    // "%(title)s [720p].%(ext)s" -> "%(title)s [720p] (%(autonumber)d).%(ext)s"
+    private static String autonumberTemplate(String tpl) {
+        String t = tpl.endsWith(".%(ext)s") ? tpl.substring(0, tpl.length() - ".%(ext)s".length()) : tpl;
+        return t + " (%(autonumber)d).%(ext)s";
+    }
+
     private static String normalizeYoutubeSingleVideoUrl(String input) {
         if (input == null) return null;
         String u = input.trim();
@@ -4766,30 +6582,105 @@ public class MainController {
         return isAudioExtension(ext);
     }
 
+    // Returns at once: SIGTERM now, the supervisor's timer force-kills whatever is left.
+    // The row's terminal state arrives through the process's onExit (see launchYtDlpRow).
     private static void killProcessTree(Process p) {
         if (p == null) return;
 
+        try {
+            ProcessSupervisor.shared().terminate(p);
+        } catch (Exception ignored) {
+            // fallback: at least kill main process
+            try { p.destroyForcibly(); } catch (Exception ignored2) {}
+        }
+    }
+
+    // ========= Suspend / resume (SIGSTOP / SIGCONT) =========
+
+    private static boolean isWindowsOs() {
+        return System.getProperty("os.name", "").toLowerCase(java.util.Locale.ROOT).contains("win");
+    }
+
+    private static boolean isLinuxOs() {
+        return System.getProperty("os.name", "").toLowerCase(java.util.Locale.ROOT).contains("linux");
+    }
+
+    // kill -STOP parent first (it can't spawn more), kill -CONT children first (nothing wakes to a frozen child)
+    private static boolean signalProcessTree(Process p, String signal) {
+        if (p == null || isWindowsOs()) return false;
         try {
             ProcessHandle h = p.toHandle();
+            java.util.List<String> cmd = new java.util.ArrayList<>();
+            cmd.add("kill");
+            cmd.add("-" + signal);
+            if ("STOP".equals(signal)) cmd.add(String.valueOf(h.pid()));
+            h.descendants().forEach(d -> cmd.add(String.valueOf(d.pid())));
+            if (!"STOP".equals(signal)) cmd.add(String.valueOf(h.pid()));
+
+            Process k = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            k.getInputStream().readAllBytes();
+            return k.waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
 
-            // graceful destroy descendants first
-            h.descendants().forEach(ph -> {
-                try { ph.destroy(); } catch (Exception ignored) {}
-            });
-            try { h.destroy(); } catch (Exception ignored) {}
+    private boolean suspendDownloadRow(DownloadRow row, Process p) {
+        if (isWindowsOs() || !PREFS.getBoolean(PREF_SUSPEND_ON_PAUSE, true)) return false;
+        if (!signalProcessTree(p, "STOP")) {
+            signalProcessTree(p, "CONT"); // partly stopped: undo and use a normal pause
+            return false;
+        }
 
-            // small wait then force kill still-alive
-            try { Thread.sleep(150); } catch (Exception ignored) {}
+        int timeoutSec = Math.max(5, PREFS.getInt(PREF_SUSPEND_TIMEOUT, DEFAULT_SUSPEND_TIMEOUT_SEC));
+        final ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+        synchronized (suspendedRows) {
+            self[0] = UI_DELAY_EXEC.schedule(() -> expireSuspension(row, p, self[0]), timeoutSec, TimeUnit.SECONDS);
+            ScheduledFuture<?> old = suspendedRows.put(row, self[0]);
+            if (old != null) old.cancel(false);
+        }
+        return true;
+    }
 
-            h.descendants().forEach(ph -> {
-                try { if (ph.isAlive()) ph.destroyForcibly(); } catch (Exception ignored) {}
-            });
-            try { if (h.isAlive()) h.destroyForcibly(); } catch (Exception ignored) {}
+    // Idle sockets die eventually: past the timeout a frozen pause becomes a normal one
+    private void expireSuspension(DownloadRow row, Process p, ScheduledFuture<?> self) {
+        synchronized (suspendedRows) {
+            if (self == null || !suspendedRows.remove(row, self)) return; // resumed meanwhile
+        }
+        stopReasons.put(row, "PAUSE");
+        killProcessTree(p); // SIGKILL reaches stopped processes; the .part files stay for --continue
+    }
 
-        } catch (Exception ignored) {
-            // fallback: at least kill main process
-            try { p.destroyForcibly(); } catch (Exception ignored2) {}
+    private boolean resumeSuspendedRow(DownloadRow row) {
+        ScheduledFuture<?> f;
+        synchronized (suspendedRows) {
+            f = suspendedRows.remove(row);
         }
+        if (f == null) return false;
+        f.cancel(false);
+
+        Process p = activeProcesses.get(row);
+        if (p == null || !p.isAlive() || !signalProcessTree(p, "CONT")) return false;
+
+        Platform.runLater(() -> {
+            row.setState(DownloadRow.State.DOWNLOADING);
+            row.status.set("Downloading");
+        });
+
+        // The global cap may have changed while it was frozen
+        restartIfRateChanged(row);
+        return true;
+    }
+
+    // Before killing a frozen tree: forget the timer and let the processes run into the signal
+    private void dropSuspension(DownloadRow row, Process p) {
+        ScheduledFuture<?> f;
+        synchronized (suspendedRows) {
+            f = suspendedRows.remove(row);
+        }
+        if (f == null) return;
+        f.cancel(false);
+        signalProcessTree(p, "CONT");
     }
 
     // Decode Unicode escape sequences like \u0645\u0627 -> ما
@@ -4875,6 +6766,23 @@ public class MainController {
     private void pauseDownloadRow(DownloadRow row) {
         if (row == null) return;
 
+        // Still waiting for a slot: just take it out of the queue
+        downloadScheduler.remove(row);
+
+        // Native transfer: stop the segments; the .part file stays on disk
+        final DownloadService.Job dj = activeDirectJobs.get(row);
+        if (dj != null) {
+            stopReasons.put(row, "PAUSE");
+            dj.stop();
+            Platform.runLater(() -> {
+                row.setState(DownloadRow.State.PAUSED);
+                row.status.set("Paused");
+                row.speed.set("");
+                row.eta.set("");
+            });
+            return;
+        }
+
         final Process p = activeProcesses.get(row);
 
         if (p == null || !p.isAlive()) {
@@ -4887,6 +6795,17 @@ public class MainController {
             return;
         }
 
+        // Freeze in place: resume is instant and keeps connections and HLS state
+        if (suspendDownloadRow(row, p)) {
+            Platform.runLater(() -> {
+                row.setState(DownloadRow.State.PAUSED);
+                row.status.set("Paused");
+                row.speed.set("");
+                row.eta.set("");
+            });
+            return;
+        }
+
         // مهم: عشان waitFor ما يعتبرها FAILED
         stopReasons.put(row, "PAUSE");
 
@@ -4904,6 +6823,8 @@ public class MainController {
     private void cancelDownloadRow(DownloadRow row) {
         if (row == null) return;
 
+        downloadScheduler.remove(row);
+
         // مهم: عشان waitFor ما يعتبرها FAILED
         stopReasons.put(row, "CANCEL");
 
@@ -4919,6 +6840,9 @@ public class MainController {
             // خلي progress زي ما هو (setState بتتعامل مع indeterminate)
         });
 
+        final DownloadService.Job dj = activeDirectJobs.get(row);
+        if (dj != null) dj.stop();
+
         // لو ما في process شغّال
         if (p == null || !p.isAlive()) {
             activeProcesses.remove(row);
@@ -4927,6 +6851,7 @@ public class MainController {
 
         // اقتل yt-dlp + ffmpeg children (cross-platform)
         try {
+            dropSuspension(row, p);
             killProcessTree(p);
         } catch (Exception ignored) {}
 
@@ -4941,7 +6866,10 @@ public class MainController {
         if (st == DownloadRow.State.DOWNLOADING) return;
 
         stopReasons.remove(row);
-        startDownloadRow(row, true); // --continue
+        row.retryCount.set(0);
+        row.nextRetryAt.set(0);
+        // user asked for this one explicitly: put it ahead of the batch
+        startDownloadRow(row, true, DownloadScheduler.PRIORITY_HIGH); // --continue
     }
 
     // --- Thumbnail helpers and cache ---
@@ -5117,6 +7045,25 @@ public class MainController {
         });
     }
 
+    // A ".part" with a valid journal becomes a PAUSED row; Resume then fetches only the missing ranges
+    private void restoreDirectResumeState(DownloadRow r) {
+        if (r == null || r.state.get() == DownloadRow.State.CANCELLED) return;
+
+        java.nio.file.Path out = r.outputFile.get();
+        long done = DownloadService.journaledBytes(out);
+        long total = DownloadService.journaledLength(out);
+        if (done <= 0 || total <= 0) return;
+
+        double pct = Math.min(1.0, (double) done / (double) total);
+        r.setState(DownloadRow.State.PAUSED);
+        r.downloadedBytes.set(done);
+        r.totalBytes.set(total);
+        r.progress.set(pct);
+        lastProgressMap.put(r, pct);
+        r.size.set(formatBytesDecimal(done) + " / " + formatBytesDecimal(total));
+        r.status.set("Paused · resumable");
+    }
+
     private void reconcileOneRowWithDisk(DownloadRow r) {
         if (r == null) return;
 
@@ -5168,6 +7115,55 @@ public class MainController {
     }
 
 
+    // Rows that were running at shutdown and left partial files go back into the scheduler
+    // with --continue, one every "stagger" seconds (the scheduler still caps concurrency)
+    private void scheduleAutoResume(java.util.List<DownloadRow> rows) {
+        if (rows == null || rows.isEmpty()) return;
+        long staggerMs = Math.max(0, PREFS.getInt(PREF_AUTO_RESUME_STAGGER, DEFAULT_AUTO_RESUME_STAGGER_SEC)) * 1000L;
+        final java.util.List<DownloadRow> candidates = new java.util.ArrayList<>(rows);
+
+        UI_DELAY_EXEC.schedule(() -> {
+            long delay = 0;
+            for (DownloadRow r : candidates) {
+                if (!hasPartialOnDisk(r)) continue;
+                UI_DELAY_EXEC.schedule(() -> Platform.runLater(() -> {
+                    DownloadRow.State st = r.state.get();
+                    if (st != DownloadRow.State.PAUSED && st != DownloadRow.State.QUEUED) return; // user got there first
+                    if (!downloadItems.contains(r)) return;
+                    startDownloadRow(r, true);
+                }), delay, TimeUnit.MILLISECONDS);
+                delay += staggerMs;
+            }
+        }, AUTO_RESUME_INITIAL_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // A .part (yt-dlp, native engine or fragment engine) for this row in its folder
+    private static boolean hasPartialOnDisk(DownloadRow r) {
+        if (r == null || r.folder == null || r.folder.isBlank()) return false;
+        try {
+            java.nio.file.Path out = r.outputFile.get();
+            String stem = null;
+            if (out != null && out.getFileName() != null) {
+                if (java.nio.file.Files.exists(DownloadService.partPathFor(out))) return true;
+                String fn = out.getFileName().toString();
+                int dot = fn.lastIndexOf('.');
+                stem = (dot > 0) ? fn.substring(0, dot) : fn;
+                // "Title [720p].f137" -> "Title [720p]": the stream parts share the merged name's stem
+                int f = stem.lastIndexOf(".f");
+                if (f > 0 && stem.substring(f + 2).chars().allMatch(Character::isLetterOrDigit)) stem = stem.substring(0, f);
+            } else if (r.title.get() != null && !r.title.get().isBlank()) {
+                stem = OutputTemplateRenderer.sanitize(r.title.get());
+            }
+            if (stem == null) return false;
+
+            for (String n : FolderIndex.shared().names(java.nio.file.Paths.get(r.folder))) {
+                if (!n.startsWith(stem)) continue;
+                if (n.endsWith(".part") || n.contains(".part.") || n.contains(".part-Frag") || n.endsWith(".ytdl")) return true;
+            }
+        } catch (Exception ignored) {}
+        return false;
+    }
+
     // ========= Playlist Screen (v1 - lightweight) =========
     private void openPlaylistWindow(String playlistUrl, String folder) {
         final String playlistFolder = (folder == null || folder.isBlank())
@@ -5286,9 +7282,20 @@ public class MainController {
         globalDesiredMode.set(MODE_VIDEO);
         globalDesiredQuality.set(QUALITY_BEST);
 
+        // How many items of this batch run at the same time
+        Label parallelLabel = new Label("Parallel");
+        parallelLabel.getStyleClass().add("gx-text-muted");
+
+        ComboBox<Integer> parallelCombo = new ComboBox<>();
+        parallelCombo.getStyleClass().addAll("gx-combo", "gx-playlist-quality");
+        for (int k = 1; k <= MAX_PLAYLIST_PARALLEL; k++) parallelCombo.getItems().add(k);
+        int savedWidth = DEFAULT_PLAYLIST_PARALLEL;
+        try { savedWidth = PREFS.getInt(PREF_PLAYLIST_PARALLEL, DEFAULT_PLAYLIST_PARALLEL); } catch (Exception ignored) {}
+        parallelCombo.getSelectionModel().select(Integer.valueOf(Math.max(1, Math.min(MAX_PLAYLIST_PARALLEL, savedWidth))));
+
         HBox globalRow = new HBox(10);
         globalRow.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
-        globalRow.getChildren().addAll(globalModeLabel, globalModeCombo, globalQLabel, globalQualityCombo);
+        globalRow.getChildren().addAll(globalModeLabel, globalModeCombo, globalQLabel, globalQualityCombo, parallelLabel, parallelCombo);
 
         Label status = new Label("Loading playlist...");
         status.getStyleClass().add("gx-text-muted");
@@ -5511,14 +7518,56 @@ public class MainController {
             userQualityInteracted.set(true);
         });
 
+            // Labels + desired quality for one probed item (FX thread)
+            java.util.function.BiConsumer<PlaylistEntry, ProbeQualitiesResult> applyProbedQualities = (it, pr) -> {
+                java.util.Set<Integer> heights = (pr == null) ? java.util.Set.of() : pr.heights;
+                java.util.Set<Integer> norm = normalizeHeights(heights);
+
+                if (norm != null && !norm.isEmpty()) {
+                    globalHeightsUnion.addAll(norm);
+                }
+                Platform.runLater(updateGlobalQualityCombo);
+
+                java.util.ArrayList<String> labels = new java.util.ArrayList<>();
+                labels.add(QUALITY_BEST);
+                labels.add(QUALITY_SEPARATOR);
+
+                java.util.List<Integer> sorted = (norm == null)
+                        ? new java.util.ArrayList<>()
+                        : new java.util.ArrayList<>(norm);
+                sorted.sort(java.util.Comparator.reverseOrder());
+                for (Integer h : sorted) labels.add(formatHeightLabel(h));
+
+                it.setAvailableQualities(labels);
+
+                // don't compute sizes here; keep empty map
+                if (it.getSizeByQuality() == null) it.setSizeByQuality(new java.util.HashMap<>());
+
+                // apply desired (video)
+                if (!MODE_AUDIO.equals(globalDesiredMode.get())) {
+                    String desired = it.getQuality();
+                    if (!it.isManualQuality()) {
+                        desired = globalDesiredQuality.get();
+                        if (desired == null || desired.isBlank()) desired = QUALITY_BEST;
+                    }
+                    String supported = pickClosestSupportedQuality(desired, it.getAvailableQualities());
+                    it.setQuality(supported);
+                }
+
+                // ✅ READY now
+                it.setQualitiesLoaded(true);
+            };
+
             Runnable startNextProbe = new Runnable() {
                 @Override
                 public void run() {
                     if (probingNow.getAndSet(true)) return; // already running
 
-                    // find next item to probe
-                    int i = probeIndex.get();
-                    while (i < items.size()) {
+                    // next chunk of items: one yt-dlp run probes all of them
+                    int start = probeIndex.get();
+                    int i = start;
+                    java.util.Map<String, PlaylistEntry> chunk = new java.util.LinkedHashMap<>();
+                    while (i < items.size() && chunk.size() < PLAYLIST_PROBE_BATCH) {
                         PlaylistEntry it = items.get(i);
                         i++;
 
@@ -5531,73 +7580,40 @@ public class MainController {
                         // de-dupe inflight
                         if (!qualitiesInflight.add(vid)) continue;
 
-                        probeIndex.set(i); // next position for later
-
-                        String url = youtubeWatchUrl(vid);
-
-                        boolean queued = probeVideoQualitiesAsync(url, vid, pr -> {
-                            try {
-                                java.util.Set<Integer> heights = (pr == null) ? java.util.Set.of() : pr.heights;
-                                java.util.Set<Integer> norm = normalizeHeights(heights);
-
-                                if (norm != null && !norm.isEmpty()) {
-                                    globalHeightsUnion.addAll(norm);
-                                }
-                                Platform.runLater(updateGlobalQualityCombo);
-
-                                java.util.ArrayList<String> labels = new java.util.ArrayList<>();
-                                labels.add(QUALITY_BEST);
-                                labels.add(QUALITY_SEPARATOR);
-
-                                java.util.List<Integer> sorted = (norm == null)
-                                        ? new java.util.ArrayList<>()
-                                        : new java.util.ArrayList<>(norm);
-                                sorted.sort(java.util.Comparator.reverseOrder());
-                                for (Integer h : sorted) labels.add(formatHeightLabel(h));
-
-                                it.setAvailableQualities(labels);
-
-                                // don't compute sizes here; keep empty map
-                                if (it.getSizeByQuality() == null) it.setSizeByQuality(new java.util.HashMap<>());
-
-                                // apply desired (video)
-                                if (!MODE_AUDIO.equals(globalDesiredMode.get())) {
-                                    String desired = it.getQuality();
-                                    if (!it.isManualQuality()) {
-                                        desired = globalDesiredQuality.get();
-                                        if (desired == null || desired.isBlank()) desired = QUALITY_BEST;
-                                    }
-                                    String supported = pickClosestSupportedQuality(desired, it.getAvailableQualities());
-                                    it.setQuality(supported);
-                                }
-
-                                // ✅ READY now
-                                it.setQualitiesLoaded(true);
+                        chunk.put(vid, it);
+                    }
+                    probeIndex.set(i); // next position for later
 
-                            } catch (Exception ignored) {
-                                it.setQualitiesLoaded(false); // allow retry
-                            } finally {
-                                qualitiesInflight.remove(vid);
-                                Platform.runLater(() -> {
-                                    requestRefreshSafe.run();
-                                    probingNow.set(false);
-                                    // continue with next item
-                                    this.run();
-                                });
-                            }
-                        });
+                    if (chunk.isEmpty()) {
+                        // done
+                        probingNow.set(false);
+                        return;
+                    }
 
-                        if (!queued) {
+                    boolean queued = probeVideoQualitiesBatchAsync(new java.util.ArrayList<>(chunk.keySet()), (vid, pr) -> {
+                        PlaylistEntry it = chunk.get(vid);
+                        if (it == null) return;
+                        try {
+                            applyProbedQualities.accept(it, pr);
+                        } catch (Exception ignored) {
+                            it.setQualitiesLoaded(false); // allow retry
+                        } finally {
                             qualitiesInflight.remove(vid);
-                            probingNow.set(false);
-                            // try again later / move on
-                            Platform.runLater(this);
+                            requestRefreshSafe.run();
                         }
-                        return;
-                    }
+                    }, () -> {
+                        probingNow.set(false);
+                        // continue with next chunk
+                        this.run();
+                    });
 
-                    // done
-                    probingNow.set(false);
+                    if (!queued) {
+                        qualitiesInflight.removeAll(chunk.keySet());
+                        probeIndex.set(start);
+                        probingNow.set(false);
+                        // probe queue full: try again shortly
+                        UI_DELAY_EXEC.schedule(() -> Platform.runLater(this), 500, TimeUnit.MILLISECONDS);
+                    }
                 }
             };
 
@@ -6227,7 +8243,10 @@ public class MainController {
 
                 String modeNow = globalDesiredMode.get();
                 String desiredNow = globalDesiredQuality.get();
-                enqueuePlaylistBatch(batch, modeNow, desiredNow);
+                Integer widthNow = parallelCombo.getValue();
+                int width = (widthNow == null) ? DEFAULT_PLAYLIST_PARALLEL : widthNow;
+                try { PREFS.putInt(PREF_PLAYLIST_PARALLEL, width); } catch (Exception ignored) {}
+                enqueuePlaylistBatch(batch, modeNow, desiredNow, width);
 
                 if (statusText != null) {
                     statusText.setText("Queued playlist: " + batch.size() + " items");
@@ -6317,7 +8336,7 @@ public class MainController {
             java.util.concurrent.ConcurrentHashMap.newKeySet();
 
     // Playlist: compute size ON DEMAND (button) to keep UI fast.
-// VIDEO only. Uses shared SIZE_CACHE + VIDEO_SIZE_EXEC if available.
+// VIDEO only. Uses shared SIZE_CACHE + VIDEO_SIZE_GATE if available.
     private void ensurePlaylistSizeAsync(PlaylistEntry it, String qLabel, Runnable requestRefreshSafe) {
         if (it == null || it.isUnavailable()) return;
         if (qLabel == null || qLabel.isBlank()) return;
@@ -6400,7 +8419,7 @@ public class MainController {
         };
 
         try {
-            VIDEO_SIZE_EXEC.execute(job);
+            VIDEO_SIZE_GATE.execute(videoUrl, job);
         } catch (java.util.concurrent.RejectedExecutionException rex) {
             PLAYLIST_SIZE_INFLIGHT.remove(inflightKey);
         } catch (Exception ex) {
@@ -6424,50 +8443,86 @@ public class MainController {
             cardNode.getStyleClass().remove(CARD_SELECTED_CLASS);
         }
     }
-    private void enqueuePlaylistBatch(java.util.List<PlaylistEntry> batch, String batchMode, String batchDefaultQuality) {
-        String modeNow = (batchMode == null || batchMode.isBlank()) ? MODE_VIDEO : batchMode;
+    // One "Download" click in the Playlist window
+    private static final class PlaylistBatch {
+        final String mode;
+        final String defaultQuality;
+        final int width; // items of this batch in flight at once
+
+        PlaylistBatch(String mode, String defaultQuality, int width) {
+            this.mode = mode;
+            this.defaultQuality = defaultQuality;
+            this.width = width;
+        }
+    }
+
+    private static final class QueuedPlaylistItem {
+        final PlaylistEntry entry;
+        final PlaylistBatch batch;
 
-        playlistBatchMode = modeNow;
-        playlistBatchDefaultQuality =
+        QueuedPlaylistItem(PlaylistEntry entry, PlaylistBatch batch) {
+            this.entry = entry;
+            this.batch = batch;
+        }
+    }
+
+    private void enqueuePlaylistBatch(java.util.List<PlaylistEntry> batch, String batchMode, String batchDefaultQuality, int width) {
+        String modeNow = (batchMode == null || batchMode.isBlank()) ? MODE_VIDEO : batchMode;
+        PlaylistBatch b = new PlaylistBatch(
+                modeNow,
                 (batchDefaultQuality == null || batchDefaultQuality.isBlank())
                         ? (MODE_AUDIO.equals(modeNow) ? AUDIO_DEFAULT_FORMAT : QUALITY_BEST)
-                        : batchDefaultQuality;
+                        : batchDefaultQuality,
+                Math.max(1, Math.min(MAX_PLAYLIST_PARALLEL, width)));
 
         for (PlaylistEntry it : batch) {
-            playlistDownloadQueue.addLast(it);
+            playlistDownloadQueue.addLast(new QueuedPlaylistItem(it, b));
         }
 
         // هنا نعرضهم فورًا كـ Pending في الـ main listview
         for (PlaylistEntry it : batch) {
             String url = youtubeWatchUrl(it.getId());
             String q = it.getQuality();
-            if (q == null || q.isBlank()) q = playlistBatchDefaultQuality;
+            if (q == null || q.isBlank()) q = b.defaultQuality;
 
             DownloadRow pendingRow = addPendingRowToMainList(url, modeNow, q, it.displayTitle());
             playlistRowByVideoId.put(it.getId(), pendingRow);
         }
 
-        if (playlistBatchRunning.compareAndSet(false, true)) {
-            startNextPlaylistDownload();
-        }
+        playlistBatchRunning.set(true);
+        startNextPlaylistDownload();
     }
 
+    // Keep up to the head item's batch width in flight; each finished item pulls the next one
     private void startNextPlaylistDownload() {
-        PlaylistEntry next = playlistDownloadQueue.pollFirst();
-        if (next == null) {
+        while (true) {
+            QueuedPlaylistItem next = playlistDownloadQueue.peekFirst();
+            if (next == null || playlistInFlight.get() >= next.batch.width) break;
+            playlistDownloadQueue.pollFirst();
+
+            playlistInFlight.incrementAndGet();
+            startPlaylistEntry(next);
+        }
+
+        if (playlistDownloadQueue.isEmpty() && playlistInFlight.get() == 0) {
             playlistBatchRunning.set(false);
-            return;
         }
+    }
 
+    private void startPlaylistEntry(QueuedPlaylistItem item) {
+        PlaylistEntry next = item.entry;
         String url = youtubeWatchUrl(next.getId());
-        String modeNow = (playlistBatchMode == null || playlistBatchMode.isBlank()) ? MODE_VIDEO : playlistBatchMode;
+        String modeNow = item.batch.mode;
         String q = next.getQuality();
-        if (q == null || q.isBlank()) q = playlistBatchDefaultQuality;
+        if (q == null || q.isBlank()) q = item.batch.defaultQuality;
 
         DownloadRow existing = playlistRowByVideoId.get(next.getId());
 
         startSingleDownloadFromPlaylist(url, modeNow, q, next.displayTitle(), existing, () ->
-                javafx.application.Platform.runLater(this::startNextPlaylistDownload)
+                javafx.application.Platform.runLater(() -> {
+                    playlistInFlight.decrementAndGet();
+                    startNextPlaylistDownload();
+                })
         );
     }
 
@@ -6487,17 +8542,21 @@ public class MainController {
             DownloadRow rFinal = row;
             javafx.application.Platform.runLater(() -> {
                 try { rFinal.setState(DownloadRow.State.QUEUED); } catch (Exception ignored) {}
-                startDownloadRow(rFinal, false);     // ✅ شغّل المحرك على نفس الصف
+                startDownloadRow(rFinal, false, DownloadScheduler.PRIORITY_LOW);     // ✅ شغّل المحرك على نفس الصف
                 scheduleHistorySave();
             });
         }
 
         final DownloadRow finalRow = row;
+        // A retried row can hit a terminal state again: only free the batch slot once
+        final AtomicBoolean doneOnce = new AtomicBoolean(false);
         finalRow.stateProperty().addListener((obs, oldS, newS) -> {
             if (newS == DownloadRow.State.COMPLETED
                     || newS == DownloadRow.State.FAILED
                     || newS == DownloadRow.State.CANCELLED) {
 
+                if (!doneOnce.compareAndSet(false, true)) return;
+
                 // نظّف الماب
                 try {
                     String id = extractYoutubeId(finalRow.url);
@@ -6636,7 +8695,7 @@ private static java.util.List<PlaylistEntry> probePlaylistFlat(String playlistUr
         pb.redirectErrorStream(true);
         pb.environment().putIfAbsent("PYTHONIOENCODING", "utf-8");
 
-        Process p = pb.start();
+        Process p = ProcessBudget.shared().start(ProcessBudget.Kind.PROBE, pb);
 
         try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
             String line;
@@ -6887,6 +8946,88 @@ private static java.util.List<PlaylistEntry> probePlaylistFlat(String playlistUr
     private static final java.util.concurrent.ConcurrentHashMap<String, ProbeQualitiesResult> VIDEO_INFO_CACHE =
             new java.util.concurrent.ConcurrentHashMap<>();
 
+    // Raw -J output of the Add Link probe. The filename probe, the hybrid resolve and the
+    // download replay it with --load-info-json instead of extracting the page again.
+    private static final long INFO_JSON_TTL_MS = 10 * 60 * 1000L; // well inside the media URLs' expiry
+    private static final int INFO_JSON_MAX = 32;
+    private static final java.util.concurrent.ConcurrentHashMap<String, InfoJson> INFO_JSON_CACHE =
+            new java.util.concurrent.ConcurrentHashMap<>();
+
+    private static final class InfoJson {
+        final String json;
+        final long createdAtMs;
+        java.nio.file.Path file; // written on first use (guarded by this)
+
+        InfoJson(String json, long createdAtMs) {
+            this.json = json;
+            this.createdAtMs = createdAtMs;
+        }
+
+        boolean isFresh() {
+            return (System.currentTimeMillis() - createdAtMs) <= INFO_JSON_TTL_MS;
+        }
+
+        synchronized void deleteFile() {
+            if (file != null) {
+                try { java.nio.file.Files.deleteIfExists(file); } catch (Exception ignored) {}
+                file = null;
+            }
+        }
+    }
+
+    private static void rememberInfoJson(String url, String json) {
+        if (url == null || url.isBlank() || json == null) return;
+        int brace = json.indexOf('{');
+        if (brace < 0) return;
+        String body = json.substring(brace);
+        // Only single videos; a playlist dump would make yt-dlp download every entry
+        if (body.contains("\"_type\": \"playlist\"") || body.contains("\"_type\":\"playlist\"")) return;
+
+        InfoJson old = INFO_JSON_CACHE.put(url.trim(), new InfoJson(body, System.currentTimeMillis()));
+        if (old != null) old.deleteFile();
+
+        // Drop the oldest entries (each one can be a few hundred KB)
+        while (INFO_JSON_CACHE.size() > INFO_JSON_MAX) {
+            java.util.Map.Entry<String, InfoJson> oldest = null;
+            for (java.util.Map.Entry<String, InfoJson> e : INFO_JSON_CACHE.entrySet()) {
+                if (oldest == null || e.getValue().createdAtMs < oldest.getValue().createdAtMs) oldest = e;
+            }
+            if (oldest == null || !INFO_JSON_CACHE.remove(oldest.getKey(), oldest.getValue())) break;
+            oldest.getValue().deleteFile();
+        }
+    }
+
+    /** File for --load-info-json, or null when there is no fresh probe for this URL. */
+    private static java.nio.file.Path freshInfoJsonFile(String url) {
+        if (url == null || url.isBlank()) return null;
+        InfoJson e = INFO_JSON_CACHE.get(url.trim());
+        if (e == null) return null;
+        if (!e.isFresh()) {
+            forgetInfoJson(url);
+            return null;
+        }
+        synchronized (e) {
+            try {
+                if (e.file == null || !java.nio.file.Files.exists(e.file)) {
+                    java.nio.file.Path f = java.nio.file.Files.createTempFile("grabx-info-", ".json");
+                    f.toFile().deleteOnExit();
+                    java.nio.file.Files.writeString(f, e.json, java.nio.charset.StandardCharsets.UTF_8);
+                    e.file = f;
+                }
+                return e.file;
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+    }
+
+    // A failed run may mean the signed URLs in the dump expired: extract again next time
+    private static void forgetInfoJson(String url) {
+        if (url == null) return;
+        InfoJson e = INFO_JSON_CACHE.remove(url.trim());
+        if (e != null) e.deleteFile();
+    }
+
     private static final class ProbeQualitiesResult {
         final java.util.Set<Integer> heights;              // normalized heights
         final java.util.Map<Integer, Long> bytesByHeight;  // normalized height -> total bytes (video+audio)
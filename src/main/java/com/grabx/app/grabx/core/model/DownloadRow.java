@@ -57,6 +57,18 @@ public class DownloadRow {
 
     public final LongProperty totalBytes = new SimpleLongProperty(-1);
     public final LongProperty downloadedBytes = new SimpleLongProperty(0);
+    // Optional per-row speed cap in bytes/sec (0 = only the global limit applies)
+    public final LongProperty rateLimit = new SimpleLongProperty(0);
+
+    // Integrity: "sha256:<hex>" computed while downloading, and the hash the user expects (optional)
+    public final StringProperty checksum = new SimpleStringProperty(null);
+    public final StringProperty expectedHash = new SimpleStringProperty(null);
+    // Extra URLs serving the same direct file, space separated (empty = single source)
+    public final StringProperty mirrors = new SimpleStringProperty(null);
+
+    // Automatic retries of transient failures: attempts so far and when the next one runs (epoch ms, 0 = none)
+    public final IntegerProperty retryCount = new SimpleIntegerProperty(0);
+    public final LongProperty nextRetryAt = new SimpleLongProperty(0);
 
     public DownloadRow(String url, String initialTitle, long orderIndex, String folder, String mode, String quality) {
         this.url = url;
@@ -0,0 +1,184 @@
+package com.grabx.app.grabx.core.service;
+
+/**
+ * AIMD controller for the number of concurrent transfers.
+ * <p>
+ * Fed once per second with the aggregate throughput of all active rows. Every
+ * evaluation window it compares the average throughput with the one measured at the
+ * previous limit: while raising the limit keeps improving throughput (and the queue
+ * has work waiting) the limit grows by one; a clear drop in per-transfer throughput
+ * while the pool is full, or new transient failures, cut it multiplicatively. Rows that
+ * simply finish lower the aggregate but not the per-transfer rate, so they cut nothing.
+ * Not thread-safe: call it from a single thread (the FX timer).
+ */
+public class AdaptiveConcurrencyController {
+
+    public enum Action { HOLD, INCREASE, DECREASE }
+
+    /** Outcome of one sample; {@code reason} is a short text suitable for the status bar. */
+    public static final class Decision {
+        public final Action action;
+        public final int limit;
+        public final long bytesPerSecond;
+        public final String reason;
+
+        Decision(Action action, int limit, long bytesPerSecond, String reason) {
+            this.action = action;
+            this.limit = limit;
+            this.bytesPerSecond = bytesPerSecond;
+            this.reason = reason;
+        }
+    }
+
+    private static final int WINDOW_SAMPLES = 5;          // evaluate every 5 samples (~5 s)
+    private static final double IMPROVE_RATIO = 1.05;     // +5% counts as "better"
+    private static final double DROP_RATIO = 0.75;        // -25% counts as "worse"
+    private static final double DROP_FACTOR = 0.7;        // multiplicative cut on throughput drop
+    private static final double ERROR_FACTOR = 0.5;       // multiplicative cut on failures
+    private static final int COOLDOWN_WINDOWS = 3;        // windows to wait after a cut / plateau
+    private static final long MIN_USEFUL_BPS = 16 * 1024; // below this the network is idle, not saturated
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private int limit;
+    private long baselineBps = -1;     // average measured at the current limit (before the last change)
+    private double baselineActive = 0; // average active rows while baselineBps was measured
+    private boolean lastWasIncrease = false;
+    private int cooldown = 0;
+
+    private long windowSum = 0;
+    private long windowActive = 0;
+    private int windowCount = 0;
+    private int windowErrors = 0;
+
+    private String lastReason = "starting";
+
+    public AdaptiveConcurrencyController(int minLimit, int maxLimit, int initialLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = clamp(initialLimit);
+    }
+
+    public int getLimit() { return limit; }
+
+    public int getMinLimit() { return minLimit; }
+
+    public int getMaxLimit() { return maxLimit; }
+
+    public String getLastReason() { return lastReason; }
+
+    /** Restart the measurement (e.g. after the user changed the limit manually). */
+    public void reset(int newLimit) {
+        limit = clamp(newLimit);
+        baselineBps = -1;
+        baselineActive = 0;
+        lastWasIncrease = false;
+        cooldown = 0;
+        windowSum = 0;
+        windowActive = 0;
+        windowCount = 0;
+        windowErrors = 0;
+        lastReason = "reset";
+    }
+
+    /**
+     * @param bytesPerSecond aggregate throughput of all active rows for the last second
+     * @param active         rows currently holding a slot
+     * @param queued         rows waiting for a slot
+     * @param newFailures    rows that failed transiently since the previous sample (network/server
+     *                       trouble; a removed or private video says nothing about concurrency)
+     */
+    public Decision sample(long bytesPerSecond, int active, int queued, int newFailures) {
+        windowSum += Math.max(0, bytesPerSecond);
+        windowActive += Math.max(0, active);
+        windowCount++;
+        windowErrors += Math.max(0, newFailures);
+
+        if (windowCount < WINDOW_SAMPLES) {
+            return new Decision(Action.HOLD, limit, bytesPerSecond, lastReason);
+        }
+
+        long avg = windowSum / windowCount;
+        double avgActive = (double) windowActive / windowCount;
+        int errors = windowErrors;
+        windowSum = 0;
+        windowActive = 0;
+        windowCount = 0;
+        windowErrors = 0;
+
+        if (cooldown > 0) cooldown--;
+
+        // Failures: back off hard, whatever the throughput says
+        if (errors > 0 && limit > minLimit) {
+            return decrease(avg, avgActive, ERROR_FACTOR, errors + " failure(s), backing off");
+        }
+
+        // Nothing running: keep the limit, forget the old baseline
+        if (active == 0) {
+            baselineBps = -1;
+            baselineActive = 0;
+            lastWasIncrease = false;
+            return hold(avg, "idle");
+        }
+
+        if (lastWasIncrease && baselineBps > 0) {
+            // The step is judged on the aggregate: one more transfer should add throughput
+            if (avg < baselineBps * DROP_RATIO && limit > minLimit) {
+                return decrease(avg, avgActive, DROP_FACTOR, "more transfers made it slower, backing off");
+            }
+            if (avg < baselineBps * IMPROVE_RATIO) {
+                // The last step did not buy anything: stay here for a while
+                lastWasIncrease = false;
+                baselineBps = avg;
+                baselineActive = avgActive;
+                cooldown = COOLDOWN_WINDOWS;
+                return hold(avg, "no gain from more transfers");
+            }
+        }
+
+        // Congestion only counts with the pool full; each transfer is compared, not the sum
+        if (!lastWasIncrease && active >= limit && baselineBps > 0 && baselineActive > 0 && avgActive > 0
+                && avg / avgActive < (baselineBps / baselineActive) * DROP_RATIO && limit > minLimit) {
+            return decrease(avg, avgActive, DROP_FACTOR, "throughput dropped, backing off");
+        }
+
+        boolean saturated = active >= limit && queued > 0;
+
+        if (saturated && cooldown == 0 && limit < maxLimit && avg >= MIN_USEFUL_BPS) {
+            baselineBps = avg;
+            baselineActive = avgActive;
+            limit++;
+            lastWasIncrease = true;
+            lastReason = "throughput rising, trying " + limit;
+            return new Decision(Action.INCREASE, limit, avg, lastReason);
+        }
+
+        // Holding: track slow drift so an old peak does not trigger cuts forever
+        lastWasIncrease = false;
+        baselineBps = (baselineBps <= 0) ? avg : (baselineBps + avg) / 2;
+        baselineActive = (baselineActive <= 0) ? avgActive : (baselineActive + avgActive) / 2;
+        return hold(avg, saturated ? "steady" : "not saturated");
+    }
+
+    private Decision decrease(long avg, double avgActive, double factor, String reason) {
+        int next = clamp((int) Math.floor(limit * factor));
+        if (next == limit) next = clamp(limit - 1);
+        limit = next;
+        baselineBps = avg;
+        baselineActive = avgActive;
+        lastWasIncrease = false;
+        cooldown = COOLDOWN_WINDOWS;
+        lastReason = reason;
+        return new Decision(Action.DECREASE, limit, avg, reason);
+    }
+
+    private Decision hold(long avg, String reason) {
+        lastReason = reason;
+        return new Decision(Action.HOLD, limit, avg, reason);
+    }
+
+    private int clamp(int n) {
+        return Math.max(minLimit, Math.min(maxLimit, n));
+    }
+}
@@ -0,0 +1,92 @@
+package com.grabx.app.grabx.core.service;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Token bucket shared by the threads of the native transfer path.
+ * <p>
+ * Readers call {@link #acquire(long, BooleanSupplier)} after every read with the number
+ * of bytes they got. The bucket may go into debt; the caller then sleeps (in short
+ * slices, so a rate change or a stop is noticed quickly) until the debt is paid back.
+ * A rate of 0 means unlimited.
+ */
+public class BandwidthLimiter {
+
+    private static final long MIN_BURST_BYTES = 16 * 1024;
+    private static final long MAX_SLEEP_NANOS = 100_000_000L; // 100 ms slices
+
+    private long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    public BandwidthLimiter() {
+        this(0);
+    }
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        this.tokens = burst();
+    }
+
+    public synchronized long getRate() {
+        return bytesPerSecond;
+    }
+
+    public synchronized boolean isUnlimited() {
+        return bytesPerSecond <= 0;
+    }
+
+    /** Change the rate; waiting readers pick it up within one sleep slice. */
+    public synchronized void setRate(long newBytesPerSecond) {
+        refill();
+        bytesPerSecond = Math.max(0, newBytesPerSecond);
+        // Old debt was computed for the old rate: cap it so the new rate applies right away
+        double cap = burst();
+        if (tokens > cap) tokens = cap;
+        if (tokens < -cap) tokens = -cap;
+    }
+
+    /**
+     * Account for {@code bytes} just transferred and block until the bucket allows more.
+     *
+     * @param stopped checked between sleep slices; when it returns true the wait is abandoned
+     * @return false if the wait was abandoned because {@code stopped} returned true
+     */
+    public boolean acquire(long bytes, BooleanSupplier stopped) throws InterruptedException {
+        if (bytes <= 0) return true;
+
+        synchronized (this) {
+            if (bytesPerSecond <= 0) return true;
+            refill();
+            tokens -= bytes;
+        }
+
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                if (bytesPerSecond <= 0) return true;
+                refill();
+                if (tokens >= 0) return true;
+                waitNanos = (long) (-tokens * 1_000_000_000d / bytesPerSecond);
+            }
+
+            if (stopped != null && stopped.getAsBoolean()) return false;
+            long slice = Math.max(1_000_000L, Math.min(waitNanos, MAX_SLEEP_NANOS));
+            Thread.sleep(slice / 1_000_000L, (int) (slice % 1_000_000L));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefillNanos;
+        lastRefillNanos = now;
+        if (bytesPerSecond <= 0 || elapsed <= 0) return;
+
+        tokens = Math.min(burst(), tokens + elapsed * (double) bytesPerSecond / 1_000_000_000d);
+    }
+
+    // Half a second worth of bytes: smooth enough for the UI, large enough for 64 KiB reads
+    private double burst() {
+        return Math.max(MIN_BURST_BYTES, bytesPerSecond / 2.0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.grabx.app.grabx.core.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small pool of same-sized heap {@link ByteBuffer}s for the native transfer path.
+ * <p>
+ * Segment workers borrow one per connection and read the response stream straight into its
+ * backing array (one copy out of the socket stream, no wrapper channel with a buffer of its own),
+ * then write it with positional {@code FileChannel.write}; the hasher digests the same array.
+ * Heap rather than direct: the data arrives through an {@code InputStream}, which can only fill a
+ * {@code byte[]}, so a direct buffer would just add a copy. At most {@code maxPooled} idle buffers
+ * are kept; extra ones are simply dropped. Hit/miss counters show how often a borrow was served
+ * from the pool versus a fresh allocation.
+ */
+public final class BufferPool {
+
+    private static final BufferPool SHARED = new BufferPool(64 * 1024, 32);
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = Math.max(4096, bufferSize);
+        this.maxPooled = Math.max(0, maxPooled);
+    }
+
+    /** Pool used by {@link DownloadService}. */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    public int bufferSize() { return bufferSize; }
+
+    /** A cleared buffer of {@link #bufferSize()} bytes (with an accessible array); return it with {@link #release(ByteBuffer)}. */
+    public ByteBuffer acquire() {
+        ByteBuffer bb = idle.poll();
+        if (bb != null) {
+            idleCount.decrementAndGet();
+            hits.incrementAndGet();
+            return bb.clear();
+        }
+        misses.incrementAndGet();
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    public void release(ByteBuffer bb) {
+        if (bb == null || !bb.hasArray() || bb.capacity() != bufferSize) return;
+        if (idleCount.incrementAndGet() > maxPooled) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(bb.clear());
+    }
+
+    public long hits() { return hits.get(); }
+
+    public long misses() { return misses.get(); }
+
+    public int idle() { return idleCount.get(); }
+}
@@ -0,0 +1,270 @@
+package com.grabx.app.grabx.core.service;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DASH MPD (ISO/IEC 23009-1) for on-demand content.
+ * <p>
+ * Handles BaseURL at every level, SegmentTemplate (with or without SegmentTimeline),
+ * SegmentList and single-file representations (SegmentBase). Only the first Period is used.
+ * Like {@link HlsParser}, this is pure parsing against a given base URI.
+ */
+public final class DashParser {
+
+    private static final Pattern TEMPLATE_VAR =
+            Pattern.compile("\\$(RepresentationID|Number|Time|Bandwidth)(?:%0(\\d+)d)?\\$");
+
+    private DashParser() {}
+
+    public static StreamManifest parse(URI base, String xml) {
+        Element mpd;
+        try {
+            DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+            f.setNamespaceAware(true);
+            f.setExpandEntityReferences(false);
+            f.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder b = f.newDocumentBuilder();
+            Document doc = b.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            mpd = doc.getDocumentElement();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid DASH manifest: " + e.getMessage(), e);
+        }
+        if (mpd == null || !"MPD".equals(localName(mpd))) throw new IllegalArgumentException("Not a DASH manifest");
+
+        boolean live = "dynamic".equals(mpd.getAttribute("type"));
+        double mpdDuration = seconds(mpd.getAttribute("mediaPresentationDuration"));
+        URI mpdBase = withBaseUrl(base, mpd);
+
+        Element period = first(mpd, "Period");
+        if (period == null) throw new IllegalArgumentException("DASH manifest has no Period");
+        double periodDuration = seconds(period.getAttribute("duration"));
+        if (periodDuration <= 0) periodDuration = Math.max(0, mpdDuration - seconds(period.getAttribute("start")));
+        URI periodBase = withBaseUrl(mpdBase, period);
+
+        List<StreamManifest.Variant> video = new ArrayList<>();
+        List<StreamManifest.Variant> audio = new ArrayList<>();
+
+        for (Element as : children(period, "AdaptationSet")) {
+            URI asBase = withBaseUrl(periodBase, as);
+            Element asTemplate = first(as, "SegmentTemplate");
+            Element asList = first(as, "SegmentList");
+
+            for (Element rep : children(as, "Representation")) {
+                String type = contentType(as, rep);
+                if (!"video".equals(type) && !"audio".equals(type)) continue; // text, image, ...
+
+                URI repBase = withBaseUrl(asBase, rep);
+                String id = attr(rep, as, "id");
+                long bandwidth = parseLong(rep.getAttribute("bandwidth"));
+                String mime = attr(rep, as, "mimeType");
+                boolean isAudio = "audio".equals(type);
+                String ext = (mime != null && mime.contains("webm")) ? "webm" : (isAudio ? "m4a" : "mp4");
+
+                Element tpl = first(rep, "SegmentTemplate");
+                Element list = first(rep, "SegmentList");
+                StreamManifest.Media media;
+                if (tpl != null || asTemplate != null) {
+                    media = fromTemplate(repBase, asTemplate, tpl, id, bandwidth, periodDuration, live, ext);
+                } else if (list != null || asList != null) {
+                    media = fromList(repBase, list != null ? list : asList, live, ext);
+                } else {
+                    // SegmentBase (or nothing): the representation is one file
+                    media = new StreamManifest.Media(null,
+                            List.of(new StreamManifest.Fragment(repBase, -1, -1, null)), live, ext);
+                }
+
+                StreamManifest.Variant v = new StreamManifest.Variant(
+                        id, bandwidth,
+                        (int) parseLong(attr(rep, as, "width")),
+                        (int) parseLong(attr(rep, as, "height")),
+                        attr(rep, as, "codecs"),
+                        isAudio, null, attr(rep, as, "lang"), null, media);
+                (isAudio ? audio : video).add(v);
+            }
+        }
+
+        // Audio-only presentation: its audio tracks are the variants
+        if (video.isEmpty() && !audio.isEmpty()) return new StreamManifest(StreamManifest.Kind.DASH, audio, List.of());
+        if (video.isEmpty()) throw new IllegalArgumentException("DASH manifest has no audio or video");
+        return new StreamManifest(StreamManifest.Kind.DASH, video, audio);
+    }
+
+    // ============================
+    // Segment addressing
+    // ============================
+
+    // Representation-level attributes override AdaptationSet-level ones
+    private static StreamManifest.Media fromTemplate(URI base, Element outer, Element inner, String id, long bandwidth,
+                                                     double periodSeconds, boolean live, String ext) {
+        long timescale = Math.max(1, parseLong(tplAttr(inner, outer, "timescale", "1")));
+        long startNumber = parseLong(tplAttr(inner, outer, "startNumber", "1"));
+        long duration = parseLong(tplAttr(inner, outer, "duration", "0"));
+        String initTpl = tplAttr(inner, outer, "initialization", null);
+        String mediaTpl = tplAttr(inner, outer, "media", null);
+        if (mediaTpl == null) throw new IllegalArgumentException("SegmentTemplate without @media");
+
+        StreamManifest.Fragment init = (initTpl == null) ? null
+                : new StreamManifest.Fragment(base.resolve(fill(initTpl, id, bandwidth, 0, 0)), -1, -1, null);
+
+        List<StreamManifest.Fragment> out = new ArrayList<>();
+        Element timeline = (inner != null) ? first(inner, "SegmentTimeline") : null;
+        if (timeline == null && outer != null) timeline = first(outer, "SegmentTimeline");
+
+        if (timeline != null) {
+            long periodEnd = (long) Math.ceil(periodSeconds * timescale);
+            long t = 0;
+            long number = startNumber;
+            for (Element s : children(timeline, "S")) {
+                if (!s.getAttribute("t").isEmpty()) t = parseLong(s.getAttribute("t"));
+                long d = parseLong(s.getAttribute("d"));
+                if (d <= 0) continue;
+                long r = parseLong(s.getAttribute("r"));
+                // r = -1: repeat until the end of the period
+                if (r < 0) r = periodEnd > t ? ((periodEnd - t + d - 1) / d) - 1 : 0;
+                for (long k = 0; k <= r; k++) {
+                    out.add(new StreamManifest.Fragment(base.resolve(fill(mediaTpl, id, bandwidth, number, t)), -1, -1, null));
+                    number++;
+                    t += d;
+                }
+            }
+        } else {
+            if (duration <= 0 || periodSeconds <= 0) throw new IllegalArgumentException("Cannot count DASH segments");
+            long count = (long) Math.ceil(periodSeconds * timescale / duration);
+            for (long k = 0; k < count; k++) {
+                long number = startNumber + k;
+                out.add(new StreamManifest.Fragment(base.resolve(fill(mediaTpl, id, bandwidth, number, k * duration)), -1, -1, null));
+            }
+        }
+        if (out.isEmpty()) throw new IllegalArgumentException("DASH representation " + id + " has no segments");
+        return new StreamManifest.Media(init, out, live, ext);
+    }
+
+    private static StreamManifest.Media fromList(URI base, Element list, boolean live, String ext) {
+        StreamManifest.Fragment init = null;
+        Element initEl = first(list, "Initialization");
+        if (initEl != null) {
+            String src = initEl.getAttribute("sourceURL");
+            long[] r = range(initEl.getAttribute("range"));
+            init = new StreamManifest.Fragment(src.isEmpty() ? base : base.resolve(src), r[0], r[1], null);
+        }
+
+        List<StreamManifest.Fragment> out = new ArrayList<>();
+        for (Element su : children(list, "SegmentURL")) {
+            String media = su.getAttribute("media");
+            long[] r = range(su.getAttribute("mediaRange"));
+            out.add(new StreamManifest.Fragment(media.isEmpty() ? base : base.resolve(media), r[0], r[1], null));
+        }
+        if (out.isEmpty()) throw new IllegalArgumentException("Empty DASH SegmentList");
+        return new StreamManifest.Media(init, out, live, ext);
+    }
+
+    // $RepresentationID$, $Number%05d$, $Time$, $Bandwidth$ and $$
+    static String fill(String tpl, String id, long bandwidth, long number, long time) {
+        Matcher m = TEMPLATE_VAR.matcher(tpl);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            String v = switch (m.group(1)) {
+                case "RepresentationID" -> id == null ? "" : id;
+                case "Number" -> pad(number, m.group(2));
+                case "Time" -> pad(time, m.group(2));
+                default -> pad(bandwidth, m.group(2));
+            };
+            m.appendReplacement(sb, Matcher.quoteReplacement(v));
+        }
+        m.appendTail(sb);
+        return sb.toString().replace("$$", "$");
+    }
+
+    private static String pad(long v, String width) {
+        if (width == null) return Long.toString(v);
+        return String.format(Locale.ROOT, "%0" + Integer.parseInt(width) + "d", v);
+    }
+
+    // ============================
+    // XML helpers
+    // ============================
+
+    private static URI withBaseUrl(URI parent, Element el) {
+        Element b = first(el, "BaseURL");
+        if (b == null) return parent;
+        String s = b.getTextContent() == null ? "" : b.getTextContent().trim();
+        return s.isEmpty() ? parent : parent.resolve(s);
+    }
+
+    private static String contentType(Element as, Element rep) {
+        String ct = as.getAttribute("contentType");
+        if (!ct.isEmpty()) return ct;
+        String mime = attr(rep, as, "mimeType");
+        if (mime != null && mime.indexOf('/') > 0) return mime.substring(0, mime.indexOf('/'));
+        String codecs = attr(rep, as, "codecs");
+        if (codecs != null) return codecs.startsWith("mp4a") || codecs.startsWith("opus") || codecs.startsWith("ac-3")
+                || codecs.startsWith("ec-3") ? "audio" : "video";
+        return "";
+    }
+
+    // Attribute on the Representation, falling back to its AdaptationSet
+    private static String attr(Element rep, Element as, String name) {
+        String v = rep.getAttribute(name);
+        if (v.isEmpty()) v = as.getAttribute(name);
+        return v.isEmpty() ? null : v;
+    }
+
+    private static String tplAttr(Element inner, Element outer, String name, String dflt) {
+        if (inner != null && !inner.getAttribute(name).isEmpty()) return inner.getAttribute(name);
+        if (outer != null && !outer.getAttribute(name).isEmpty()) return outer.getAttribute(name);
+        return dflt;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> out = new ArrayList<>();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && name.equals(localName(e))) out.add(e);
+        }
+        return out;
+    }
+
+    private static Element first(Element parent, String name) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && name.equals(localName(e))) return e;
+        }
+        return null;
+    }
+
+    private static String localName(Element e) {
+        return e.getLocalName() != null ? e.getLocalName() : e.getTagName();
+    }
+
+    // "a-b" -> {offset, length}; {-1, -1} when absent
+    private static long[] range(String s) {
+        if (s == null || s.isBlank() || s.indexOf('-') <= 0) return new long[]{-1, -1};
+        long a = parseLong(s.substring(0, s.indexOf('-')));
+        long b = parseLong(s.substring(s.indexOf('-') + 1));
+        return b >= a ? new long[]{a, b - a + 1} : new long[]{-1, -1};
+    }
+
+    // ISO-8601 duration ("PT1H2M3.5S", "P1DT2H") in seconds; 0 when missing
+    private static double seconds(String iso) {
+        if (iso == null || iso.isBlank()) return 0;
+        try {
+            return Duration.parse(iso.trim()).toMillis() / 1000.0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static long parseLong(String s) {
+        try { return (s == null || s.isBlank()) ? 0 : Long.parseLong(s.trim()); } catch (Exception e) { return 0; }
+    }
+}
@@ -0,0 +1,202 @@
+package com.grabx.app.grabx.core.service;
+
+import com.grabx.app.grabx.core.model.DownloadRow;
+
+import java.util.*;
+
+/**
+ * Owns the queue of rows waiting for a transfer slot.
+ * <p>
+ * Rows are ordered by priority, then FIFO by submission order. At most
+ * {@link #getMaxActive()} rows run at once; a queued row is only handed to the
+ * {@link Launcher} when another row calls {@link #release(DownloadRow)}.
+ * Within a priority level, hosts are served round-robin and each host is held to the
+ * {@link HostConnectionLimiter} budget, so one busy domain cannot take every slot.
+ * The launcher is always invoked outside the scheduler lock.
+ */
+public class DownloadScheduler {
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    public static final int MIN_ACTIVE = 1;
+    public static final int MAX_ACTIVE = 16;
+
+    /** Starts the real transfer for a row that was granted a slot. */
+    public interface Launcher {
+        void launch(DownloadRow row, boolean resume);
+    }
+
+    private static final class Entry {
+        final DownloadRow row;
+        final String host;
+        final int priority;
+        final long seq;
+        boolean resume;
+
+        Entry(DownloadRow row, int priority, long seq, boolean resume) {
+            this.row = row;
+            this.host = HostConnectionLimiter.hostOf(row.url);
+            this.priority = priority;
+            this.seq = seq;
+            this.resume = resume;
+        }
+    }
+
+    private final Launcher launcher;
+    private final HostConnectionLimiter hostLimiter;
+    // seq is unique, so the set never treats two rows as equal
+    private final TreeSet<Entry> queue = new TreeSet<>(
+            Comparator.<Entry>comparingInt(e -> e.priority).thenComparingLong(e -> e.seq));
+    private final Map<DownloadRow, Entry> queued = new IdentityHashMap<>();
+    private final Map<DownloadRow, String> active = new IdentityHashMap<>();
+
+    private long nextSeq = 0;
+    private int maxActive;
+
+    public DownloadScheduler(int maxActive, Launcher launcher) {
+        this(maxActive, new HostConnectionLimiter(MAX_ACTIVE), launcher);
+    }
+
+    public DownloadScheduler(int maxActive, HostConnectionLimiter hostLimiter, Launcher launcher) {
+        this.launcher = Objects.requireNonNull(launcher, "launcher");
+        this.hostLimiter = Objects.requireNonNull(hostLimiter, "hostLimiter");
+        this.maxActive = clamp(maxActive);
+    }
+
+    public HostConnectionLimiter getHostLimiter() {
+        return hostLimiter;
+    }
+
+    private static int clamp(int n) {
+        return Math.max(MIN_ACTIVE, Math.min(MAX_ACTIVE, n));
+    }
+
+    /**
+     * Queue a row (or start it right away if a slot is free).
+     * Re-submitting a queued row only updates its resume flag and raises its priority if needed;
+     * re-submitting a running row is passed straight to the launcher, which de-duplicates runs itself.
+     *
+     * @return true if the row was started (or is already running), false if it is waiting
+     */
+    public boolean submit(DownloadRow row, boolean resume, int priority) {
+        if (row == null) return false;
+
+        boolean alreadyActive;
+        synchronized (this) {
+            alreadyActive = active.containsKey(row);
+            if (!alreadyActive) {
+                Entry prev = queued.get(row);
+                if (prev != null) {
+                    prev.resume |= resume;
+                    if (priority >= prev.priority) return false;
+                    queue.remove(prev);
+                    resume |= prev.resume;
+                } else {
+                    hostLimiter.addQueued(HostConnectionLimiter.hostOf(row.url), 1);
+                }
+                Entry e = new Entry(row, priority, nextSeq++, resume);
+                queued.put(row, e);
+                queue.add(e);
+            }
+        }
+
+        if (alreadyActive) {
+            launcher.launch(row, resume);
+            return true;
+        }
+
+        pump();
+        synchronized (this) {
+            return active.containsKey(row);
+        }
+    }
+
+    /** A running row finished (completed, failed, paused or cancelled): free its slot. */
+    public void release(DownloadRow row) {
+        if (row == null) return;
+        boolean changed;
+        synchronized (this) {
+            String host = active.remove(row);
+            changed = host != null;
+            if (changed) hostLimiter.release(host);
+        }
+        if (changed) pump();
+    }
+
+    /** Drop a row that is still waiting (pause/cancel/delete before it started). */
+    public synchronized boolean remove(DownloadRow row) {
+        Entry e = queued.remove(row);
+        if (e == null) return false;
+        queue.remove(e);
+        hostLimiter.addQueued(e.host, -1);
+        return true;
+    }
+
+    public synchronized boolean isQueued(DownloadRow row) {
+        return queued.containsKey(row);
+    }
+
+    public synchronized boolean isActive(DownloadRow row) {
+        return active.containsKey(row);
+    }
+
+    public synchronized int activeCount() {
+        return active.size();
+    }
+
+    public synchronized int queuedCount() {
+        return queue.size();
+    }
+
+    public synchronized int getMaxActive() {
+        return maxActive;
+    }
+
+    /** Raising the limit starts waiting rows immediately; lowering it lets running rows finish. */
+    public void setMaxActive(int n) {
+        synchronized (this) {
+            maxActive = clamp(n);
+        }
+        pump();
+    }
+
+    /*
+     * Highest priority level that has a startable row; inside that level the oldest row of the
+     * least recently served host that is still under its budget (FIFO per host, round-robin across hosts).
+     */
+    private Entry pickNext() {
+        Entry best = null;
+        for (Entry e : queue) {
+            if (best != null && e.priority != best.priority) break;
+            if (!hostLimiter.canAcquire(e.host)) continue;
+            if (best == null || hostLimiter.lastServed(e.host) < hostLimiter.lastServed(best.host)) best = e;
+        }
+        return best;
+    }
+
+    private void pump() {
+        List<Entry> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (active.size() < maxActive) {
+                Entry e = pickNext();
+                if (e == null) break;
+                queue.remove(e);
+                queued.remove(e.row);
+                hostLimiter.addQueued(e.host, -1);
+                hostLimiter.tryAcquire(e.host);
+                active.put(e.row, e.host);
+                toStart.add(e);
+            }
+        }
+
+        for (Entry e : toStart) {
+            try {
+                launcher.launch(e.row, e.resume);
+            } catch (RuntimeException ex) {
+                release(e.row);
+            }
+        }
+    }
+}
@@ -1,4 +1,1118 @@
 package com.grabx.app.grabx.core.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Native HTTP engine for direct-file links (ISOs, archives, ...).
+ * <p>
+ * When the server supports byte ranges the file is split into N segments that are
+ * fetched in parallel and written with positional {@link FileChannel} writes into a
+ * single ".part" file, which is renamed to the final name once every segment is done.
+ * Servers without range support fall back to one sequential stream.
+ * <p>
+ * Ranged transfers keep a {@link ResumeJournal} next to the ".part" file, so a later run
+ * (even after a crash) only re-requests the byte ranges that are still missing.
+ * <p>
+ * Workers that run out of segments steal the second half of the remaining range of the
+ * segment expected to finish last (slowest remaining/throughput), so one slow connection
+ * does not set the finish time of the whole file.
+ */
 public class DownloadService {
+
+    public static final String USER_AGENT = "GrabX/1.0";
+    public static final String PART_SUFFIX = ".part";
+
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 20000;
+    private static final int MAX_REDIRECTS = 8;
+    private static final int SEGMENT_RETRIES = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_SEGMENT_BYTES = 1024L * 1024L; // don't split below 1 MiB
+    private static final long PROGRESS_INTERVAL_MS = 500;
+    // Show "Hashing" only when the final catch-up has a noticeable amount left to read
+    private static final long HASH_STATUS_THRESHOLD = 32L * 1024L * 1024L;
+    private static final long JOURNAL_INTERVAL_MS = 2000; // max progress lost on a crash
+    private static final long MIN_STEAL_BYTES = 512L * 1024L;   // never split below this per half
+    private static final long STEAL_MIN_AGE_NS = 1_500_000_000L; // let a segment show its speed first
+
+    private volatile int maxConnections = 6;
+
+    // Shared by every native transfer (rate 0 = unlimited)
+    private final BandwidthLimiter globalLimiter = new BandwidthLimiter();
+    private final BufferPool bufferPool = BufferPool.shared();
+
+    public DownloadService() {}
+
+    public BandwidthLimiter getGlobalLimiter() { return globalLimiter; }
+
+    public BufferPool getBufferPool() { return bufferPool; }
+
+    public int getMaxConnections() { return maxConnections; }
+
+    public void setMaxConnections(int n) { this.maxConnections = Math.max(1, Math.min(32, n)); }
+
+    // ============================
+    // Probe (HEAD + range check)
+    // ============================
+    public static final class RemoteInfo {
+        public final String finalUrl;
+        public final long length;          // -1 when unknown
+        public final boolean acceptsRanges;
+        public final String etag;
+        public final String lastModified;
+        public final String fileName;      // from Content-Disposition or URL path (never blank)
+        public final Map<String, String> headers; // sent with every request (e.g. from yt-dlp's http_headers)
+
+        RemoteInfo(String finalUrl, long length, boolean acceptsRanges, String etag, String lastModified, String fileName,
+                   Map<String, String> headers) {
+            this.finalUrl = finalUrl;
+            this.length = length;
+            this.acceptsRanges = acceptsRanges;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fileName = fileName;
+            this.headers = (headers == null) ? Map.of() : Map.copyOf(headers);
+        }
+    }
+
+    /**
+     * HEAD the URL and check whether byte ranges are honoured.
+     * Many servers omit "Accept-Ranges" on HEAD, so a tiny ranged GET (bytes=0-0) confirms it.
+     */
+    public RemoteInfo probe(String url) throws IOException {
+        return probe(url, Map.of());
+    }
+
+    /** Like {@link #probe(String)}, sending {@code headers} (and keeping them for the transfer). */
+    public RemoteInfo probe(String url, Map<String, String> headers) throws IOException {
+        if (url == null || url.isBlank()) throw new IOException("Empty URL");
+
+        String finalUrl = url.trim();
+        long length = -1;
+        boolean ranges = false;
+        String etag = null;
+        String lastModified = null;
+        String disposition = null;
+
+        HttpURLConnection head = null;
+        try {
+            head = open(finalUrl, "HEAD", -1, -1, headers);
+            int code = head.getResponseCode();
+            finalUrl = head.getURL().toString();
+            if (code >= 200 && code < 300) {
+                length = head.getContentLengthLong();
+                ranges = "bytes".equalsIgnoreCase(trimToNull(head.getHeaderField("Accept-Ranges")));
+                etag = trimToNull(head.getHeaderField("ETag"));
+                lastModified = trimToNull(head.getHeaderField("Last-Modified"));
+                disposition = head.getHeaderField("Content-Disposition");
+            }
+        } catch (IOException ignored) {
+            // Some servers reject HEAD; the ranged GET below still gives us what we need.
+        } finally {
+            if (head != null) head.disconnect();
+        }
+
+        if (!ranges || length <= 0) {
+            HttpURLConnection get = null;
+            try {
+                get = open(finalUrl, "GET", 0, 0, headers);
+                int code = get.getResponseCode();
+                finalUrl = get.getURL().toString();
+                if (code == 206) {
+                    long total = parseContentRangeTotal(get.getHeaderField("Content-Range"));
+                    if (total > 0) {
+                        length = total;
+                        ranges = true;
+                    }
+                } else if (code >= 200 && code < 300) {
+                    ranges = false;
+                    if (length <= 0) length = get.getContentLengthLong();
+                } else if (length <= 0) {
+                    throw new IOException("HTTP " + code);
+                }
+                if (etag == null) etag = trimToNull(get.getHeaderField("ETag"));
+                if (lastModified == null) lastModified = trimToNull(get.getHeaderField("Last-Modified"));
+                if (disposition == null) disposition = get.getHeaderField("Content-Disposition");
+            } finally {
+                if (get != null) get.disconnect();
+            }
+        }
+
+        String name = fileNameFromDisposition(disposition);
+        if (name == null) name = fileNameFromUrl(finalUrl);
+        return new RemoteInfo(finalUrl, length > 0 ? length : -1, ranges && length > 0, etag, lastModified, name, headers);
+    }
+
+    // ============================
+    // Mirrors (race + validate)
+    // ============================
+    private static final long MIRROR_HEAD_SAMPLE = 256L * 1024L;
+    private static final long MIRROR_TAIL_SAMPLE = 64L * 1024L;
+    private static final long MIRROR_PROBE_TIMEOUT_MS = 15_000;
+
+    /**
+     * Race {@code primary} and the equivalent {@code urls} with a short ranged transfer each.
+     * A mirror is kept only if it reports the same length, honours ranges, and its sampled
+     * head and tail bytes hash the same as the primary's (ETags differ between servers, so
+     * they are not compared). The sample time seeds each mirror's speed, so the fastest one is used first.
+     *
+     * @param rejected receives "url: reason" for every mirror that was dropped (may be null)
+     * @return the validated set, or null when fewer than two sources qualify
+     */
+    public MirrorSet probeMirrors(RemoteInfo primary, List<String> urls, List<String> rejected)
+            throws InterruptedException {
+        if (primary == null || !primary.acceptsRanges || primary.length <= 0 || urls == null) return null;
+
+        List<String> candidates = new ArrayList<>(new LinkedHashSet<>(urlsWithPrimary(primary, urls)));
+        if (candidates.size() < 2) return null;
+
+        ExecutorService pool = Executors.newFixedThreadPool(candidates.size(), r -> {
+            Thread t = new Thread(r, "grabx-mirror-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<MirrorSample>> probes = new ArrayList<>();
+            for (String u : candidates) {
+                probes.add(() -> {
+                    // Mirrors get the primary's headers: they usually want the same Referer/UA/cookies
+                    RemoteInfo ri = u.equals(primary.finalUrl) ? primary : probe(u, primary.headers);
+                    if (ri.length != primary.length) throw new IOException("length " + ri.length + " != " + primary.length);
+                    if (!ri.acceptsRanges) throw new IOException("no range support");
+                    return sampleMirror(ri.finalUrl, primary.length, primary.headers);
+                });
+            }
+            List<Future<MirrorSample>> results = pool.invokeAll(probes, MIRROR_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            MirrorSample ref = sampleOrNull(results.get(0));
+            if (ref == null) return null; // can't validate anything against an unreachable primary
+
+            List<MirrorSet.Mirror> ok = new ArrayList<>();
+            ok.add(new MirrorSet.Mirror(ref.url, ref.bytesPerSecond));
+            for (int i = 1; i < results.size(); i++) {
+                String reason;
+                try {
+                    MirrorSample s = results.get(i).get();
+                    if (Arrays.equals(s.fingerprint, ref.fingerprint)) {
+                        ok.add(new MirrorSet.Mirror(s.url, s.bytesPerSecond));
+                        continue;
+                    }
+                    reason = "different content";
+                } catch (CancellationException ce) {
+                    reason = "timed out";
+                } catch (ExecutionException ee) {
+                    Throwable c = ee.getCause();
+                    reason = (c == null || c.getMessage() == null) ? "unreachable" : c.getMessage();
+                }
+                if (rejected != null) rejected.add(candidates.get(i) + ": " + reason);
+            }
+            return ok.size() < 2 ? null : new MirrorSet(ok);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<String> urlsWithPrimary(RemoteInfo primary, List<String> urls) {
+        List<String> out = new ArrayList<>();
+        out.add(primary.finalUrl);
+        for (String u : urls) {
+            if (u != null && !u.isBlank()) out.add(u.trim());
+        }
+        return out;
+    }
+
+    private static MirrorSample sampleOrNull(Future<MirrorSample> f) {
+        try {
+            return f.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static final class MirrorSample {
+        final String url;
+        final byte[] fingerprint;
+        final double bytesPerSecond;
+
+        MirrorSample(String url, byte[] fingerprint, double bytesPerSecond) {
+            this.url = url;
+            this.fingerprint = fingerprint;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    // SHA-256 over the first 256 KiB and last 64 KiB; the head read is also the speed probe
+    private static MirrorSample sampleMirror(String url, long length, Map<String, String> headers) throws IOException {
+        java.security.MessageDigest md;
+        try {
+            md = java.security.MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        long headEnd = Math.min(length, MIRROR_HEAD_SAMPLE) - 1;
+        long t0 = System.nanoTime();
+        long n = sampleRange(url, 0, headEnd, headers, md);
+        long dt = Math.max(1, System.nanoTime() - t0);
+        double bps = n * 1_000_000_000.0 / dt;
+
+        if (length - 1 > headEnd) {
+            sampleRange(url, Math.max(headEnd + 1, length - MIRROR_TAIL_SAMPLE), length - 1, headers, md);
+        }
+        return new MirrorSample(url, md.digest(), bps);
+    }
+
+    private static long sampleRange(String url, long from, long to, Map<String, String> headers,
+                                    java.security.MessageDigest md) throws IOException {
+        HttpURLConnection c = null;
+        try {
+            c = open(url, "GET", from, to, headers);
+            if (c.getResponseCode() != 206) throw new IOException("range request ignored (HTTP " + c.getResponseCode() + ")");
+            long want = to - from + 1;
+            long got = 0;
+            byte[] buf = new byte[16 * 1024];
+            try (InputStream in = c.getInputStream()) {
+                int r;
+                while (got < want && (r = in.read(buf, 0, (int) Math.min(buf.length, want - got))) > 0) {
+                    md.update(buf, 0, r);
+                    got += r;
+                }
+            }
+            if (got != want) throw new IOException("short sample");
+            return got;
+        } finally {
+            if (c != null) c.disconnect();
+        }
+    }
+
+    // ============================
+    // Download (blocking)
+    // ============================
+    public interface Listener {
+        void onStatus(String status);
+        void onProgress(long downloadedBytes, long totalBytes, long bytesPerSecond);
+    }
+
+    /** Handle for a running transfer; {@link #stop()} aborts it from any thread. */
+    public static final class Job {
+        private volatile boolean stopped = false;
+        private final Set<HttpURLConnection> openConnections = ConcurrentHashMap.newKeySet();
+        // Optional per-row cap, applied before the global one
+        private final BandwidthLimiter rowLimiter = new BandwidthLimiter();
+
+        /** Per-row cap in bytes/sec (0 = no row cap); takes effect on running segments. */
+        public void setRateLimit(long bytesPerSecond) { rowLimiter.setRate(bytesPerSecond); }
+
+        // Integrity hashing (off unless requested before download starts)
+        private volatile Set<StreamingHasher.Algorithm> hashAlgorithms = Set.of();
+        private volatile StreamingHasher hasher;
+        private volatile Map<StreamingHasher.Algorithm, String> digests = Map.of();
+
+        /** Hash the file while it downloads; call before {@link DownloadService#download}. */
+        public void requestDigests(Set<StreamingHasher.Algorithm> algorithms) {
+            hashAlgorithms = (algorithms == null) ? Set.of() : Set.copyOf(algorithms);
+        }
+
+        /** Hex digests of the finished file (empty when none were requested or it did not complete). */
+        public Map<StreamingHasher.Algorithm, String> getDigests() { return digests; }
+
+        // Checked before the .part is renamed, so a corrupt file never gets the final name
+        private volatile StreamingHasher.Algorithm expectedAlgorithm;
+        private volatile String expectedHex;
+
+        /** Fail with {@link ChecksumMismatchException} unless the file hashes to {@code hex}; implies hashing it. */
+        public void expectDigest(StreamingHasher.Algorithm algorithm, String hex) {
+            expectedAlgorithm = algorithm;
+            expectedHex = hex;
+            if (algorithm != null && !hashAlgorithms.contains(algorithm)) {
+                Set<StreamingHasher.Algorithm> all = EnumSet.of(algorithm);
+                all.addAll(hashAlgorithms);
+                hashAlgorithms = Set.copyOf(all);
+            }
+        }
+
+        // Extra sources for ranged transfers (null = only RemoteInfo.finalUrl)
+        private volatile MirrorSet mirrors;
+
+        /** Spread segments over validated mirrors; see {@link DownloadService#probeMirrors}. */
+        public void useMirrors(MirrorSet mirrors) { this.mirrors = mirrors; }
+
+        public MirrorSet getMirrors() { return mirrors; }
+
+        public void stop() {
+            stopped = true;
+            for (HttpURLConnection c : openConnections) {
+                try { c.disconnect(); } catch (Exception ignored) {}
+            }
+        }
+
+        public boolean isStopped() { return stopped; }
+    }
+
+    /** Thrown when {@link Job#stop()} interrupted the transfer (pause/cancel, not a failure). */
+    public static final class StoppedException extends IOException {
+        public StoppedException() { super("Stopped"); }
+    }
+
+    /** The finished file did not match {@link Job#expectDigest}; its .part and journal are deleted. */
+    public static final class ChecksumMismatchException extends IOException {
+        public final StreamingHasher.Algorithm algorithm;
+
+        public ChecksumMismatchException(StreamingHasher.Algorithm algorithm) {
+            super("Checksum mismatch (" + algorithm.label + ")");
+            this.algorithm = algorithm;
+        }
+    }
+
+    /**
+     * A contiguous byte range [start, end] (inclusive) owned by one worker.
+     * {@code end} only ever shrinks (work stealing); the owner sizes each read under the
+     * segment lock, so a split never lands inside a read that is already in flight.
+     */
+    static final class Segment {
+        final long start;
+        final AtomicLong end;
+        final AtomicLong pos;
+
+        // Throughput bookkeeping, updated by the progress loop
+        volatile MirrorSet.Mirror mirror;
+        volatile long mirrorSinceNanos = 0;
+        volatile boolean active = false;
+        volatile long startedNanos = 0;
+        volatile double bytesPerSecond = 0;
+        long lastSamplePos;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = new AtomicLong(end);
+            this.pos = new AtomicLong(start);
+            this.lastSamplePos = start;
+        }
+
+        long remaining() {
+            long e = end.get();
+            return e == Long.MAX_VALUE ? Long.MAX_VALUE : e - pos.get() + 1;
+        }
+    }
+
+    /**
+     * Download {@code info} into {@code target} (blocking). Returns the final file path.
+     * Throws {@link StoppedException} if the job was stopped.
+     */
+    public Path download(RemoteInfo info, Path target, Job job, Listener listener)
+            throws IOException, InterruptedException {
+
+        if (info == null || target == null || job == null) throw new IllegalArgumentException("info/target/job");
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path part = partPathFor(target);
+
+        final long total = info.length;
+        final boolean journaled = info.acceptsRanges && total > 0;
+        final Path journalPath = ResumeJournal.pathFor(part);
+
+        // Resume only when the journal describes this exact remote file and the .part is still there
+        ResumeJournal previous = journaled ? ResumeJournal.read(journalPath) : null;
+        final boolean resuming = previous != null && previous.matches(info) && Files.isRegularFile(part);
+        if (!resuming) {
+            previous = null;
+            ResumeJournal.delete(journalPath);
+        }
+        final List<long[]> alreadyDone = resuming ? previous.completed : List.of();
+
+        // Grows while running: stolen halves are appended
+        final List<Segment> segments = new CopyOnWriteArrayList<>(resuming
+                ? planSegments(previous.missing())
+                : planSegments(info));
+        final ConcurrentLinkedQueue<Segment> unstarted = new ConcurrentLinkedQueue<>(segments);
+        final AtomicLong downloaded = new AtomicLong(resuming ? previous.completedBytes() : 0);
+
+        // On resume the hasher starts at 0 and catches up over the prefix that is already on disk
+        final StreamingHasher hasher = job.hashAlgorithms.isEmpty() ? null : new StreamingHasher(job.hashAlgorithms);
+        job.hasher = hasher;
+        job.digests = Map.of();
+
+        if (listener != null) {
+            String conns = segments.size() > 1 ? (" (" + Math.min(segments.size(), maxConnections) + " connections)") : "";
+            if (job.mirrors != null && info.acceptsRanges) conns += " · " + job.mirrors.size() + " mirrors";
+            listener.onStatus((resuming ? "Resuming" : "Downloading") + conns);
+        }
+
+        final int workers = Math.max(1, Math.min(segments.size(), maxConnections));
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "grabx-segment");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Set<StandardOpenOption> openOptions = resuming
+                ? EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+                : EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (hasher != null) openOptions.add(StandardOpenOption.READ); // out-of-order bytes are hashed back from the file
+
+        boolean mismatch = false;
+        ByteBuffer hashScratch = (hasher != null) ? bufferPool.acquire() : null;
+        try (FileChannel ch = FileChannel.open(part, openOptions)) {
+
+            if (!resuming && total > 0) preallocate(ch, total);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(pool.submit(() -> {
+                    runWorker(info, segments, unstarted, ch, job, downloaded);
+                    return null;
+                }));
+            }
+
+            // Progress loop in the caller's thread
+            long lastBytes = downloaded.get();
+            long lastTs = System.nanoTime();
+            long lastJournal = lastTs;
+            long speed = 0;
+            while (true) {
+                boolean allDone = true;
+                for (Future<?> f : futures) {
+                    if (!f.isDone()) { allDone = false; break; }
+                }
+
+                long now = System.nanoTime();
+                long cur = downloaded.get();
+                long dtMs = (now - lastTs) / 1_000_000L;
+                if (dtMs > 0) {
+                    long inst = (cur - lastBytes) * 1000L / dtMs;
+                    speed = (speed == 0) ? inst : (speed * 7 + inst * 3) / 10; // smooth
+                }
+                if (dtMs > 0) {
+                    sampleSegmentSpeeds(segments, dtMs);
+                    if (job.mirrors != null) sampleMirrorSpeeds(job.mirrors, segments);
+                }
+                lastBytes = cur;
+                lastTs = now;
+                if (listener != null) listener.onProgress(cur, total, Math.max(0, speed));
+
+                // Bytes that arrived out of order are hashed from the page cache, a bounded slice per tick
+                if (hasher != null) {
+                    try {
+                        hasher.catchUp(ch, contiguousFrontier(alreadyDone, segments), hashScratch, true);
+                    } catch (IOException ignored) {
+                        // retried below with the full read, which reports the error
+                    }
+                }
+
+                if (journaled && !allDone && (now - lastJournal) / 1_000_000L >= JOURNAL_INTERVAL_MS) {
+                    lastJournal = now;
+                    writeJournal(journalPath, info, alreadyDone, segments, ch);
+                }
+
+                if (allDone) break;
+                Thread.sleep(PROGRESS_INTERVAL_MS);
+            }
+
+            // Stopped or failed: record exactly what is on disk so the next run continues from there
+            boolean complete = total > 0 && downloaded.get() >= total;
+            if (journaled && !complete) writeJournal(journalPath, info, alreadyDone, segments, ch);
+
+            // Surface the first failure (stop wins over errors caused by closed sockets)
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException ee) {
+                    if (job.isStopped()) throw new StoppedException();
+                    Throwable c = ee.getCause();
+                    if (c instanceof IOException io) throw io;
+                    throw new IOException(c == null ? "Segment failed" : c.getMessage(), c);
+                }
+            }
+            if (job.isStopped()) throw new StoppedException();
+
+            if (total > 0 && downloaded.get() < total) {
+                throw new IOException("Incomplete download (" + downloaded.get() + " of " + total + " bytes)");
+            }
+
+            if (hasher != null) {
+                long frontier = contiguousFrontier(alreadyDone, segments);
+                if (listener != null && frontier - hasher.position() > HASH_STATUS_THRESHOLD) listener.onStatus("Hashing");
+                hasher.catchUp(ch, frontier, hashScratch, false);
+                if (total > 0 && hasher.position() != total) {
+                    throw new IOException("Hash covered " + hasher.position() + " of " + total + " bytes");
+                }
+                job.digests = hasher.finish();
+                StreamingHasher.Algorithm alg = job.expectedAlgorithm;
+                mismatch = alg != null && !Objects.equals(job.digests.get(alg), job.expectedHex);
+            }
+
+            if (!mismatch) ch.force(false);
+        } finally {
+            pool.shutdownNow();
+            job.hasher = null;
+            bufferPool.release(hashScratch);
+        }
+
+        // Resuming would only reproduce the same bytes: start over next time
+        if (mismatch) {
+            try { Files.deleteIfExists(part); } catch (Exception ignored) {}
+            ResumeJournal.delete(journalPath);
+            throw new ChecksumMismatchException(job.expectedAlgorithm);
+        }
+
+        if (listener != null) listener.onStatus("Finalizing");
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        ResumeJournal.delete(journalPath);
+        return target;
+    }
+
+    /**
+     * Sequential transfer into {@code out} (a pipe into a muxer, for example): one connection,
+     * bytes in order, nothing on disk. A dropped connection resumes at the current offset when the
+     * server honours ranges; otherwise the error is thrown, since a pipe cannot be rewound.
+     * Uses the job's row cap and the global limiter like {@link #download}. Returns the byte count.
+     */
+    public long streamTo(RemoteInfo info, java.io.OutputStream out, Job job, Listener listener)
+            throws IOException, InterruptedException {
+
+        if (info == null || out == null || job == null) throw new IllegalArgumentException("info/out/job");
+
+        final long total = info.length;
+        final AtomicLong written = new AtomicLong();
+        byte[] buf = new byte[BUFFER_SIZE];
+        int attempt = 0;
+
+        long lastBytes = 0;
+        long lastTs = System.nanoTime();
+        long speed = 0;
+
+        while (total < 0 || written.get() < total) {
+            if (job.isStopped()) throw new StoppedException();
+
+            HttpURLConnection conn = null;
+            boolean sinkFailed = false;
+            long from = written.get();
+            try {
+                boolean ranged = from > 0;
+                conn = ranged
+                        ? open(info.finalUrl, "GET", from, total > 0 ? total - 1 : -1, info.headers)
+                        : open(info.finalUrl, "GET", -1, -1, info.headers);
+                job.openConnections.add(conn);
+
+                int code = conn.getResponseCode();
+                if (ranged && code != 206) throw new IOException("Server ignored range request (HTTP " + code + ")");
+                if (!ranged && (code < 200 || code >= 300)) throw new IOException("HTTP " + code);
+
+                try (InputStream in = conn.getInputStream()) {
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        if (job.isStopped()) throw new StoppedException();
+                        try {
+                            out.write(buf, 0, n);
+                        } catch (IOException we) {
+                            sinkFailed = true;
+                            throw we;
+                        }
+                        written.addAndGet(n);
+                        throttle(job, n);
+
+                        long now = System.nanoTime();
+                        long dtMs = (now - lastTs) / 1_000_000L;
+                        if (dtMs >= PROGRESS_INTERVAL_MS) {
+                            long cur = written.get();
+                            long inst = (cur - lastBytes) * 1000L / dtMs;
+                            speed = (speed == 0) ? inst : (speed * 7 + inst * 3) / 10; // smooth
+                            lastBytes = cur;
+                            lastTs = now;
+                            if (listener != null) listener.onProgress(cur, total, Math.max(0, speed));
+                        }
+                    }
+                }
+                if (total < 0) break; // unknown length: EOF means done
+                if (written.get() < total) throw new IOException("Connection closed early");
+
+            } catch (StoppedException se) {
+                throw se;
+            } catch (IOException ex) {
+                if (job.isStopped()) throw new StoppedException();
+                // Only the network side is retried; a broken pipe means the reader is gone
+                if (sinkFailed || !info.acceptsRanges || ++attempt > SEGMENT_RETRIES) throw ex;
+                Thread.sleep(400L * attempt);
+            } finally {
+                if (conn != null) {
+                    job.openConnections.remove(conn);
+                    conn.disconnect();
+                }
+            }
+        }
+
+        out.flush();
+        if (listener != null) listener.onProgress(written.get(), total, 0);
+        return written.get();
+    }
+
+    /**
+     * Download one HLS/DASH rendition (blocking): fragments in parallel over the shared
+     * HTTP client, written in order into {@code target}. Uses the same job, stop handling
+     * and bandwidth caps as {@link #download}.
+     */
+    public Path downloadStream(StreamManifest.Media media, Path target, Job job, FragmentDownloader.Listener listener)
+            throws IOException, InterruptedException {
+        return downloadStream(media, Map.of(), target, job, listener);
+    }
+
+    /** Like {@link #downloadStream(StreamManifest.Media, Path, Job, FragmentDownloader.Listener)}, with request headers. */
+    public Path downloadStream(StreamManifest.Media media, Map<String, String> headers, Path target, Job job,
+                               FragmentDownloader.Listener listener) throws IOException, InterruptedException {
+        if (media == null || target == null || job == null) throw new IllegalArgumentException("media/target/job");
+        FragmentDownloader fd = new FragmentDownloader(FragmentDownloader.sharedClient(), maxConnections, SEGMENT_RETRIES, headers);
+        return fd.download(media, target, job::isStopped, n -> throttle(job, n), listener);
+    }
+
+    /** Bytes of a resumable ".part" already on disk according to its journal, or -1. */
+    public static long journaledBytes(Path target) {
+        if (target == null) return -1;
+        Path part = partPathFor(target);
+        if (!Files.isRegularFile(part)) return -1;
+        ResumeJournal j = ResumeJournal.read(ResumeJournal.pathFor(part));
+        return (j == null) ? -1 : j.completedBytes();
+    }
+
+    /** Total length recorded in the journal of {@code target}'s ".part", or -1. */
+    public static long journaledLength(Path target) {
+        if (target == null) return -1;
+        ResumeJournal j = ResumeJournal.read(ResumeJournal.pathFor(partPathFor(target)));
+        return (j == null) ? -1 : j.length;
+    }
+
+    /*
+     * Size the .part to its final length before any segment writes, so concurrent segments
+     * don't keep extending the file. Java has no fallocate: on NTFS this reserves the
+     * clusters, on most Unix file systems it creates a sparse file. Best-effort either way.
+     */
+    private static void preallocate(FileChannel ch, long total) {
+        try {
+            if (ch.size() >= total) return;
+            ByteBuffer one = ByteBuffer.allocate(1);
+            ch.write(one, total - 1);
+        } catch (IOException ignored) {
+            // not fatal: positional writes extend the file as needed
+        }
+    }
+
+    // Positions first, then fsync the data, then the journal: it never claims unwritten bytes
+    private void writeJournal(Path journalPath, RemoteInfo info, List<long[]> alreadyDone,
+                              List<Segment> segments, FileChannel ch) {
+        try {
+            List<long[]> done = new ArrayList<>(alreadyDone);
+            for (Segment s : segments) {
+                long p = s.pos.get();
+                if (p > s.start) done.add(new long[]{s.start, p - 1});
+            }
+            ch.force(false);
+            new ResumeJournal(info.finalUrl, info.etag, info.lastModified, info.length, done).write(journalPath);
+        } catch (Exception ignored) {
+            // best-effort: a stale journal only means re-downloading a little more
+        }
+    }
+
+    // End of the gap-free prefix [0, frontier) that is already written
+    private static long contiguousFrontier(List<long[]> alreadyDone, List<Segment> segments) {
+        List<long[]> done = new ArrayList<>(alreadyDone);
+        for (Segment s : segments) {
+            long p = s.pos.get();
+            if (p > s.start) done.add(new long[]{s.start, p - 1});
+        }
+        List<long[]> merged = ResumeJournal.normalize(done);
+        if (merged.isEmpty() || merged.get(0)[0] != 0) return 0;
+        return merged.get(0)[1] + 1;
+    }
+
+    private List<Segment> planSegments(RemoteInfo info) {
+        long total = info.length;
+
+        if (!info.acceptsRanges || total <= 0) {
+            // single stream; end unknown => Long.MAX_VALUE
+            List<Segment> out = new ArrayList<>();
+            out.add(new Segment(0, total > 0 ? total - 1 : Long.MAX_VALUE));
+            return out;
+        }
+
+        List<long[]> whole = new ArrayList<>();
+        whole.add(new long[]{0, total - 1});
+        return planSegments(whole);
+    }
+
+    // Split the given inclusive ranges into at most ~maxConnections pieces of similar size
+    private List<Segment> planSegments(List<long[]> ranges) {
+        List<Segment> out = new ArrayList<>();
+        long sum = 0;
+        for (long[] r : ranges) sum += r[1] - r[0] + 1;
+        if (sum <= 0) return out;
+
+        int n = (int) Math.max(1, Math.min(maxConnections, sum / MIN_SEGMENT_BYTES));
+        long chunk = Math.max(1, (sum + n - 1) / n);
+
+        for (long[] r : ranges) {
+            long start = r[0];
+            while (start <= r[1]) {
+                long end = Math.min(r[1], start + chunk - 1);
+                // don't leave a tiny tail on its own
+                if (r[1] - end < MIN_SEGMENT_BYTES / 4) end = r[1];
+                out.add(new Segment(start, end));
+                start = end + 1;
+            }
+        }
+        return out;
+    }
+
+    // One pool thread: planned segments first, then steal from the slowest running one until nothing is left
+    private void runWorker(RemoteInfo info, List<Segment> segments, Queue<Segment> unstarted,
+                           FileChannel ch, Job job, AtomicLong downloaded) throws IOException {
+        while (true) {
+            if (job.isStopped()) throw new StoppedException();
+
+            Segment seg = unstarted.poll();
+            if (seg == null && info.acceptsRanges) {
+                seg = steal(segments);
+                if (seg != null) segments.add(seg);
+            }
+            if (seg == null) return;
+
+            seg.startedNanos = System.nanoTime();
+            seg.active = true;
+            try {
+                fetchSegment(info, seg, ch, job, downloaded);
+            } finally {
+                seg.active = false;
+            }
+        }
+    }
+
+    // EWMA of each running segment's bytes/sec (progress loop thread only)
+    private static void sampleSegmentSpeeds(List<Segment> segments, long dtMs) {
+        for (Segment s : segments) {
+            long p = s.pos.get();
+            long delta = p - s.lastSamplePos;
+            s.lastSamplePos = p;
+            if (!s.active) continue;
+            double inst = delta * 1000.0 / dtMs;
+            s.bytesPerSecond = (s.bytesPerSecond <= 0) ? inst : s.bytesPerSecond * 0.7 + inst * 0.3;
+        }
+    }
+
+    // Per-connection speed of each mirror = average over the segments currently reading from it
+    private static void sampleMirrorSpeeds(MirrorSet mirrors, List<Segment> segments) {
+        Map<MirrorSet.Mirror, double[]> acc = new IdentityHashMap<>();
+        for (Segment s : segments) {
+            MirrorSet.Mirror m = s.mirror;
+            // skip connections whose speed still mostly reflects the previous mirror
+            if (!s.active || m == null || System.nanoTime() - s.mirrorSinceNanos < STEAL_MIN_AGE_NS) continue;
+            double[] a = acc.computeIfAbsent(m, k -> new double[2]);
+            a[0] += s.bytesPerSecond;
+            a[1]++;
+        }
+        for (Map.Entry<MirrorSet.Mirror, double[]> e : acc.entrySet()) {
+            mirrors.observe(e.getKey(), e.getValue()[0] / e.getValue()[1]);
+        }
+    }
+
+    /*
+     * Pick the running segment that will finish last (remaining / speed) and give away the
+     * second half of what it has left. Returns the new segment, or null if nothing is worth splitting.
+     */
+    private static Segment steal(List<Segment> segments) {
+        long now = System.nanoTime();
+        Segment victim = null;
+        double worst = -1;
+
+        for (Segment s : segments) {
+            if (!s.active || now - s.startedNanos < STEAL_MIN_AGE_NS) continue;
+            long rem = s.remaining();
+            if (rem == Long.MAX_VALUE || rem < 2 * MIN_STEAL_BYTES) continue;
+            double finishIn = rem / Math.max(1.0, s.bytesPerSecond);
+            if (finishIn > worst) {
+                worst = finishIn;
+                victim = s;
+            }
+        }
+        if (victim == null) return null;
+
+        synchronized (victim) {
+            long pos = victim.pos.get();
+            long end = victim.end.get();
+            long rem = end - pos + 1;
+            if (!victim.active || rem < 2 * MIN_STEAL_BYTES) return null;
+
+            // Keep one buffer of slack ahead of the owner: its current read never crosses the cut
+            long mid = pos + BUFFER_SIZE + (rem - BUFFER_SIZE) / 2;
+            victim.end.set(mid - 1);
+            return new Segment(mid, end);
+        }
+    }
+
+    private void fetchSegment(RemoteInfo info, Segment seg, FileChannel ch, Job job, AtomicLong downloaded)
+            throws IOException {
+
+        // One pooled buffer per segment: the stream is read straight into its array, then written positionally
+        ByteBuffer bb = bufferPool.acquire();
+        try {
+            fetchSegment(info, seg, ch, job, downloaded, bb);
+        } finally {
+            bufferPool.release(bb);
+        }
+    }
+
+    private void fetchSegment(RemoteInfo info, Segment seg, FileChannel ch, Job job, AtomicLong downloaded,
+                              ByteBuffer bb) throws IOException {
+
+        boolean ranged = info.acceptsRanges;
+        int attempt = 0;
+
+        while (seg.remaining() > 0) {
+            if (job.isStopped()) throw new StoppedException();
+
+            // Each (re)connect goes to whichever mirror is delivering best right now
+            final MirrorSet mirrors = ranged ? job.mirrors : null;
+            final MirrorSet.Mirror mirror = (mirrors != null) ? mirrors.pick() : null;
+            final String url = (mirror != null) ? mirror.url : info.finalUrl;
+            final long connectedAt = System.nanoTime();
+            seg.mirror = mirror;
+            seg.mirrorSinceNanos = connectedAt;
+            boolean moving = false;
+
+            HttpURLConnection conn = null;
+            try {
+                long from = seg.pos.get();
+                conn = ranged
+                        ? open(url, "GET", from, seg.end.get(), info.headers)
+                        : open(url, "GET", -1, -1, info.headers);
+                job.openConnections.add(conn);
+
+                int code = conn.getResponseCode();
+                if (ranged && code != 206) throw new IOException("Server ignored range request (HTTP " + code + ")");
+                if (!ranged && (code < 200 || code >= 300)) throw new IOException("HTTP " + code);
+
+                // Without ranges a retry restarts from zero.
+                if (!ranged && from > 0) {
+                    downloaded.addAndGet(-from);
+                    seg.pos.set(0);
+                }
+
+                final int maxRead = Math.min(BUFFER_SIZE, bb.capacity());
+                final byte[] arr = bb.array();
+                final int base = bb.arrayOffset();
+                try (InputStream in = conn.getInputStream()) {
+                    while (true) {
+                        int want;
+                        synchronized (seg) {
+                            long rem = seg.remaining();
+                            if (rem <= 0) break; // done, or the tail was stolen
+                            want = (int) Math.min(maxRead, rem);
+                        }
+                        int n = in.read(arr, base, want);
+                        if (n <= 0) break;
+                        if (job.isStopped()) throw new StoppedException();
+
+                        long p = seg.pos.get();
+                        final long writtenAt = p;
+                        bb.clear().limit(n);
+                        while (bb.hasRemaining()) p += ch.write(bb, p);
+
+                        // In-order bytes are digested straight from the buffer
+                        StreamingHasher h = job.hasher;
+                        if (h != null) h.offer(writtenAt, bb.position(0));
+
+                        seg.pos.set(p);
+                        downloaded.addAndGet(n);
+                        throttle(job, n);
+                        if (seg.remaining() <= 0) break;
+                        if (mirror != null && mirrors.shouldLeave(mirror, connectedAt, seg.remaining())) {
+                            moving = true;
+                            break;
+                        }
+                    }
+                }
+                if (moving) continue; // reconnect to the faster mirror; not a failure
+
+                // Unknown length stream: EOF means done
+                if (seg.end.get() == Long.MAX_VALUE) return;
+                if (seg.remaining() > 0) throw new IOException("Connection closed early");
+
+            } catch (StoppedException se) {
+                throw se;
+            } catch (IOException ex) {
+                if (job.isStopped()) throw new StoppedException();
+                if (mirror != null) mirrors.failed(mirror);
+                if (++attempt > SEGMENT_RETRIES) throw ex;
+                try { Thread.sleep(400L * attempt); } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new StoppedException();
+                }
+            } finally {
+                if (conn != null) {
+                    job.openConnections.remove(conn);
+                    conn.disconnect();
+                }
+            }
+        }
+    }
+
+    private void throttle(Job job, int n) throws StoppedException {
+        try {
+            if (!job.rowLimiter.acquire(n, job::isStopped)) throw new StoppedException();
+            if (!globalLimiter.acquire(n, job::isStopped)) throw new StoppedException();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new StoppedException();
+        }
+    }
+
+    // ============================
+    // Helpers
+    // ============================
+
+    /** ".part" sibling used while the transfer is running. */
+    public static Path partPathFor(Path target) {
+        return target.resolveSibling(target.getFileName().toString() + PART_SUFFIX);
+    }
+
+    /** Pick a free name in {@code dir}: "name.ext", then "name (1).ext", "name (2).ext", ... */
+    public static Path uniqueTarget(Path dir, String fileName) {
+        String name = (fileName == null || fileName.isBlank()) ? "download" : fileName;
+        Path p = dir.resolve(name);
+        if (!Files.exists(p) && !Files.exists(partPathFor(p))) return p;
+
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; i < 10_000; i++) {
+            Path cand = dir.resolve(base + " (" + i + ")" + ext);
+            if (!Files.exists(cand) && !Files.exists(partPathFor(cand))) return cand;
+        }
+        return dir.resolve(base + " (" + System.currentTimeMillis() + ")" + ext);
+    }
+
+    /** Open a connection, following redirects manually (HttpURLConnection won't switch http -> https). */
+    static HttpURLConnection open(String url, String method, long rangeStart, long rangeEnd) throws IOException {
+        return open(url, method, rangeStart, rangeEnd, Map.of());
+    }
+
+    // Extra headers may replace User-Agent; Range and Accept-Encoding stay under our control
+    static HttpURLConnection open(String url, String method, long rangeStart, long rangeEnd,
+                                  Map<String, String> headers) throws IOException {
+        String cur = url;
+        String origin = new URL(url).getHost();
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            boolean sameHost = origin.equalsIgnoreCase(new URL(cur).getHost());
+            HttpURLConnection c = (HttpURLConnection) new URL(cur).openConnection();
+            c.setInstanceFollowRedirects(false);
+            c.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            c.setReadTimeout(READ_TIMEOUT_MS);
+            c.setRequestMethod(method);
+            c.setRequestProperty("User-Agent", USER_AGENT);
+            if (headers != null) {
+                for (Map.Entry<String, String> h : headers.entrySet()) {
+                    String k = h.getKey();
+                    if (k == null || h.getValue() == null) continue;
+                    if (k.equalsIgnoreCase("Range") || k.equalsIgnoreCase("Accept-Encoding")) continue;
+                    // credentials are not forwarded when a redirect leaves the original host
+                    if (!sameHost && (k.equalsIgnoreCase("Cookie") || k.equalsIgnoreCase("Authorization"))) continue;
+                    c.setRequestProperty(k, h.getValue());
+                }
+            }
+            c.setRequestProperty("Accept-Encoding", "identity");
+            if (rangeStart >= 0) {
+                c.setRequestProperty("Range", "bytes=" + rangeStart + "-" + (rangeEnd >= 0 && rangeEnd != Long.MAX_VALUE ? rangeEnd : ""));
+            }
+
+            int code = c.getResponseCode();
+            if (code >= 300 && code < 400 && code != 304) {
+                String loc = c.getHeaderField("Location");
+                c.disconnect();
+                if (loc == null || loc.isBlank()) throw new IOException("Redirect without Location (HTTP " + code + ")");
+                cur = new URL(new URL(cur), loc).toString();
+                continue;
+            }
+            return c;
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    private static long parseContentRangeTotal(String cr) {
+        // "bytes 0-0/12345"
+        if (cr == null) return -1;
+        int slash = cr.lastIndexOf('/');
+        if (slash < 0) return -1;
+        String t = cr.substring(slash + 1).trim();
+        if (t.equals("*")) return -1;
+        try { return Long.parseLong(t); } catch (Exception e) { return -1; }
+    }
+
+    private static String fileNameFromDisposition(String cd) {
+        if (cd == null || cd.isBlank()) return null;
+        try {
+            // RFC 5987: filename*=UTF-8''name.ext
+            int star = cd.toLowerCase(Locale.ROOT).indexOf("filename*=");
+            if (star >= 0) {
+                String v = cd.substring(star + "filename*=".length()).trim();
+                int semi = v.indexOf(';');
+                if (semi >= 0) v = v.substring(0, semi);
+                int q = v.indexOf("''");
+                if (q >= 0) v = v.substring(q + 2);
+                String name = sanitizeFileName(URLDecoder.decode(v.replace("+", "%2B"), StandardCharsets.UTF_8));
+                if (name != null) return name;
+            }
+            int i = cd.toLowerCase(Locale.ROOT).indexOf("filename=");
+            if (i >= 0) {
+                String v = cd.substring(i + "filename=".length()).trim();
+                if (v.startsWith("\"")) {
+                    int end = v.indexOf('"', 1);
+                    v = end > 0 ? v.substring(1, end) : v.substring(1);
+                } else {
+                    int semi = v.indexOf(';');
+                    if (semi >= 0) v = v.substring(0, semi);
+                }
+                return sanitizeFileName(v);
+            }
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    private static String fileNameFromUrl(String url) {
+        try {
+            String path = new URL(url).getPath();
+            if (path != null) {
+                int slash = path.lastIndexOf('/');
+                String last = slash >= 0 ? path.substring(slash + 1) : path;
+                String name = sanitizeFileName(URLDecoder.decode(last.replace("+", "%2B"), StandardCharsets.UTF_8));
+                if (name != null) return name;
+            }
+        } catch (Exception ignored) {}
+        return "download";
+    }
+
+    private static String sanitizeFileName(String s) {
+        if (s == null) return null;
+        String v = s.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        while (v.startsWith(".")) v = v.substring(1);
+        if (v.length() > 200) v = v.substring(v.length() - 200);
+        return v.isBlank() ? null : v;
+    }
+
+    private static String trimToNull(String s) {
+        if (s == null) return null;
+        s = s.trim();
+        return s.isEmpty() ? null : s;
+    }
 }
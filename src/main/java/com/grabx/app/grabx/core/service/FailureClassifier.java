@@ -0,0 +1,81 @@
+package com.grabx.app.grabx.core.service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a failed run is worth retrying, from the last lines of yt-dlp output
+ * (or a native engine error message) and the exit code, and how long to wait before the
+ * next attempt.
+ * <p>
+ * Permanent markers win: "Private video ... HTTP Error 503" is still permanent.
+ */
+public final class FailureClassifier {
+
+    public enum Kind {
+        /** Network/server trouble: retry with backoff. */
+        TRANSIENT,
+        /** The video or URL itself is the problem: retrying cannot help. */
+        PERMANENT,
+        /** Nothing recognised; treated like permanent (no automatic retry). */
+        UNKNOWN
+    }
+
+    private static final Pattern PERMANENT = Pattern.compile(
+            "private video|video unavailable|this video (?:has been|is) (?:removed|no longer available)"
+                    + "|unsupported url|is not a valid url|no video formats found|requested format is not available"
+                    + "|sign in to confirm your age|members[- ]only|join this channel|copyright"
+                    + "|not available in your country|geo[- ]?restrict|account (?:has been )?terminated"
+                    + "|http error 40[014]|http error 410|\\bhttp 40[014]\\b|\\bhttp 410\\b"
+                    + "|checksum mismatch|\\bdrm\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern TRANSIENT = Pattern.compile(
+            "http error 5\\d\\d|\\bhttp 5\\d\\d\\b|http error 429|\\bhttp 429\\b|too many requests"
+                    + "|timed out|timeout|connection (?:reset|refused|aborted|closed early)"
+                    + "|remote end closed|incompleteread|incomplete download|broken pipe|eof occurred"
+                    + "|temporary failure in name resolution|name or service not known|network is unreachable"
+                    + "|fragment \\d+ not found|giving up after \\d+ fragment|unable to download (?:video data|fragment)"
+                    + "|did not get any data blocks|server ignored range",
+            Pattern.CASE_INSENSITIVE);
+
+    private FailureClassifier() {}
+
+    /**
+     * Whether a yt-dlp output line is a diagnostic worth classifying. Everything else
+     * ("[download] Destination: ...", "[Merger] ...") can carry the video title, and a title
+     * like "No Copyright Music" must not decide the outcome.
+     */
+    public static boolean isDiagnostic(String line) {
+        if (line == null) return false;
+        String s = line.stripLeading();
+        return s.startsWith("ERROR:") || s.startsWith("WARNING:") || s.startsWith("[download] Got error");
+    }
+
+    /** {@code exitCode} < 0 when unknown (native engine); yt-dlp's 2 is a usage error. */
+    public static Kind classify(int exitCode, Collection<String> outputTail) {
+        if (exitCode == 2) return Kind.PERMANENT;
+
+        boolean transientSeen = false;
+        if (outputTail != null) {
+            for (String line : outputTail) {
+                if (line == null || line.isBlank()) continue;
+                if (PERMANENT.matcher(line).find()) return Kind.PERMANENT;
+                if (TRANSIENT.matcher(line).find()) transientSeen = true;
+            }
+        }
+        return transientSeen ? Kind.TRANSIENT : Kind.UNKNOWN;
+    }
+
+    /**
+     * Delay before attempt {@code attempt} (1-based): base * 2^(attempt-1), capped, with
+     * "equal jitter" (half fixed, half random) so rows that failed together spread out.
+     */
+    public static long backoffMillis(int attempt, long baseMs, long capMs) {
+        int shift = Math.max(0, Math.min(20, attempt - 1));
+        long exp = Math.min(capMs, baseMs << shift);
+        long half = Math.max(1, exp / 2);
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+}
@@ -0,0 +1,72 @@
+package com.grabx.app.grabx.core.service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory listing of output folders, for "does this name exist" checks without a stat
+ * (or a yt-dlp spawn) per candidate. A folder is listed once and re-listed only when its
+ * modification time changes, which happens whenever an entry is created, renamed or deleted.
+ */
+public final class FolderIndex {
+
+    private static final FolderIndex SHARED = new FolderIndex();
+
+    // A finished media file: "<stem>.<ext>", not a yt-dlp intermediate (.part/.ytdl/.temp)
+    private static final Pattern MEDIA_EXT = Pattern.compile("[A-Za-z0-9]{2,5}");
+    private static final Set<String> NOT_MEDIA = Set.of("part", "ytdl", "temp", "tmp", "json");
+
+    private static final class Listing {
+        final FileTime modified;
+        final Set<String> names;
+
+        Listing(FileTime modified, Set<String> names) {
+            this.modified = modified;
+            this.names = names;
+        }
+    }
+
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+
+    public static FolderIndex shared() { return SHARED; }
+
+    /** File names in {@code dir} (empty if it does not exist). */
+    public Set<String> names(Path dir) {
+        Path key = dir.toAbsolutePath().normalize();
+        FileTime mtime;
+        try {
+            mtime = Files.getLastModifiedTime(key);
+        } catch (IOException e) {
+            listings.remove(key);
+            return Set.of();
+        }
+
+        Listing l = listings.get(key);
+        if (l != null && l.modified.equals(mtime)) return l.names;
+
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(key)) {
+            for (Path p : ds) names.add(p.getFileName().toString());
+        } catch (IOException e) {
+            return Set.of();
+        }
+        Set<String> snapshot = Collections.unmodifiableSet(names);
+        listings.put(key, new Listing(mtime, snapshot));
+        return snapshot;
+    }
+
+    /** A finished file named {@code stem.<any media extension>} is in {@code dir}. */
+    public boolean hasMediaFile(Path dir, String stem) {
+        String prefix = stem + ".";
+        for (String n : names(dir)) {
+            if (!n.startsWith(prefix)) continue;
+            String ext = n.substring(prefix.length());
+            if (MEDIA_EXT.matcher(ext).matches() && !NOT_MEDIA.contains(ext.toLowerCase(Locale.ROOT))) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,340 @@
+package com.grabx.app.grabx.core.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fetches the fragments of one HLS/DASH rendition in parallel and writes them, in order, into a single file.
+ * <p>
+ * Up to {@code parallel} fragments are in flight and at most {@code 2 * parallel} are held
+ * in memory; the calling thread writes fragment i as soon as it (and everything before it) has
+ * arrived, so the window acts as the reorder buffer. Each fragment is retried on its own.
+ * A small sidecar ("name.ext.part.frag") records how many fragments are on disk so a paused
+ * transfer continues where it stopped.
+ */
+public final class FragmentDownloader {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".frag";
+    private static final long STATE_INTERVAL_MS = 2000;
+    private static final long POLL_MS = 250;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final HttpClient SHARED_CLIENT = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(8))
+            .build();
+
+    public interface Listener {
+        void onStatus(String status);
+        /** {@code done} of {@code total} fragments written; {@code bytes} received so far. */
+        void onFragment(int done, int total, long bytes, long bytesPerSecond);
+    }
+
+    /** Blocks until {@code n} more bytes may be read (bandwidth caps); throws to abort. */
+    public interface Throttle {
+        void acquire(int n) throws IOException;
+    }
+
+    /** The playlist has no end (live/event): the native engine leaves these to yt-dlp. */
+    public static final class LiveStreamException extends IOException {
+        public LiveStreamException() { super("Live streams are not supported by the native engine"); }
+    }
+
+    private final HttpClient client;
+    private final int parallel;
+    private final int retries;
+    private final Map<String, String> headers;
+    private final Map<URI, byte[]> keys = new ConcurrentHashMap<>();
+
+    public FragmentDownloader(HttpClient client, int parallel, int retries) {
+        this(client, parallel, retries, Map.of());
+    }
+
+    /** {@code headers} go on every request (e.g. the http_headers yt-dlp resolved for a format). */
+    public FragmentDownloader(HttpClient client, int parallel, int retries, Map<String, String> headers) {
+        this.client = client == null ? SHARED_CLIENT : client;
+        this.parallel = Math.max(1, parallel);
+        this.retries = Math.max(0, retries);
+        this.headers = (headers == null) ? Map.of() : Map.copyOf(headers);
+    }
+
+    /** Keep-alive client shared by all stream downloads. */
+    public static HttpClient sharedClient() {
+        return SHARED_CLIENT;
+    }
+
+    /** GET a manifest or playlist as text. */
+    public String fetchText(URI uri) throws IOException, InterruptedException {
+        HttpResponse<String> r = client.send(request(uri, -1, -1), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (r.statusCode() < 200 || r.statusCode() >= 300) throw new IOException("HTTP " + r.statusCode() + " for " + uri);
+        return r.body();
+    }
+
+    /**
+     * Download {@code media} into {@code target} (blocking).
+     * Throws {@link DownloadService.StoppedException} when {@code stopped} turns true.
+     */
+    public Path download(StreamManifest.Media media, Path target, BooleanSupplier stopped, Throttle throttle,
+                         Listener listener) throws IOException, InterruptedException {
+        if (media.live) throw new LiveStreamException();
+
+        final List<StreamManifest.Fragment> all = media.all();
+        final int total = all.size();
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path part = target.resolveSibling(target.getFileName().toString() + PART_SUFFIX);
+        Path state = part.resolveSibling(part.getFileName().toString() + STATE_SUFFIX);
+
+        // Resume only if the sidecar describes this exact fragment list
+        String fingerprint = total + " " + all.get(0).uri + " " + all.get(total - 1).uri;
+        long[] resume = readState(state, fingerprint);
+        int start = 0;
+        long startBytes = 0;
+        if (resume != null && Files.isRegularFile(part) && Files.size(part) >= resume[1]) {
+            start = (int) resume[0];
+            startBytes = resume[1];
+        }
+
+        final AtomicLong received = new AtomicLong(startBytes);
+        ExecutorService pool = Executors.newFixedThreadPool(parallel, r -> {
+            Thread t = new Thread(r, "grabx-fragment");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (listener != null) listener.onStatus((start > 0 ? "Resuming" : "Downloading") + " (" + total + " fragments)");
+
+        Map<Integer, Future<byte[]>> inFlight = new HashMap<>();
+        try (FileChannel ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.truncate(startBytes);
+            ch.position(startBytes);
+
+            int nextSubmit = start;
+            int nextWrite = start;
+            final int window = parallel * 2;
+            long lastTs = System.nanoTime();
+            long lastBytes = received.get();
+            long lastState = lastTs;
+            long speed = 0;
+
+            try {
+                while (nextWrite < total) {
+                    if (stopped.getAsBoolean()) throw new DownloadService.StoppedException();
+
+                    while (nextSubmit < total && nextSubmit - nextWrite < window) {
+                        final StreamManifest.Fragment f = all.get(nextSubmit);
+                        inFlight.put(nextSubmit, pool.submit(() -> fetch(f, stopped, throttle, received)));
+                        nextSubmit++;
+                    }
+
+                    // Wait for the next fragment in order; later ones stay buffered in their futures
+                    byte[] data;
+                    try {
+                        data = inFlight.get(nextWrite).get(POLL_MS, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        data = null;
+                    } catch (ExecutionException ee) {
+                        if (stopped.getAsBoolean()) throw new DownloadService.StoppedException();
+                        Throwable c = ee.getCause();
+                        if (c instanceof IOException io) throw io;
+                        throw new IOException(c == null ? "Fragment failed" : c.getMessage(), c);
+                    }
+
+                    if (data != null) {
+                        inFlight.remove(nextWrite);
+                        ByteBuffer bb = ByteBuffer.wrap(data);
+                        while (bb.hasRemaining()) ch.write(bb);
+                        nextWrite++;
+                    }
+
+                    long now = System.nanoTime();
+                    long dtMs = (now - lastTs) / 1_000_000L;
+                    if (dtMs >= POLL_MS || nextWrite == total) {
+                        long cur = received.get();
+                        if (dtMs > 0) {
+                            long inst = (cur - lastBytes) * 1000L / dtMs;
+                            speed = (speed == 0) ? inst : (speed * 7 + inst * 3) / 10;
+                        }
+                        lastBytes = cur;
+                        lastTs = now;
+                        if (listener != null) listener.onFragment(nextWrite, total, cur, Math.max(0, speed));
+                    }
+                    if ((now - lastState) / 1_000_000L >= STATE_INTERVAL_MS) {
+                        lastState = now;
+                        ch.force(false);
+                        writeState(state, fingerprint, nextWrite, ch.position());
+                    }
+                }
+            } finally {
+                // Stopped or failed: record the fragments that are fully on disk
+                if (nextWrite < total) {
+                    try {
+                        ch.force(false);
+                        writeState(state, fingerprint, nextWrite, ch.position());
+                    } catch (Exception ignored) {}
+                }
+            }
+
+            ch.force(false);
+        } finally {
+            for (Future<byte[]> f : inFlight.values()) f.cancel(true);
+            pool.shutdownNow();
+        }
+
+        if (listener != null) listener.onStatus("Finalizing");
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try { Files.deleteIfExists(state); } catch (Exception ignored) {}
+        return target;
+    }
+
+    // ============================
+    // One fragment
+    // ============================
+
+    private byte[] fetch(StreamManifest.Fragment f, BooleanSupplier stopped, Throttle throttle, AtomicLong received)
+            throws IOException, InterruptedException {
+        int attempt = 0;
+        while (true) {
+            if (stopped.getAsBoolean()) throw new DownloadService.StoppedException();
+            long counted = 0;
+            try {
+                HttpResponse<InputStream> r = client.send(
+                        request(f.uri, f.offset, f.length), HttpResponse.BodyHandlers.ofInputStream());
+                int code = r.statusCode();
+                if (f.isRanged() && code != 206) {
+                    r.body().close();
+                    throw new IOException("Server ignored range request (HTTP " + code + ")");
+                }
+                if (code < 200 || code >= 300) {
+                    r.body().close();
+                    throw new IOException("HTTP " + code + " for fragment " + f.uri);
+                }
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(f.length > 0 ? (int) f.length : 256 * 1024);
+                byte[] buf = new byte[64 * 1024];
+                try (InputStream in = r.body()) {
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        if (stopped.getAsBoolean()) throw new DownloadService.StoppedException();
+                        out.write(buf, 0, n);
+                        counted += n;
+                        received.addAndGet(n);
+                        if (throttle != null) throttle.acquire(n);
+                    }
+                }
+                if (f.length > 0 && out.size() != f.length) throw new IOException("Short fragment");
+
+                byte[] data = out.toByteArray();
+                return (f.key == null) ? data : decrypt(f.key, data, stopped);
+
+            } catch (DownloadService.StoppedException | InterruptedException e) {
+                throw e;
+            } catch (IOException ex) {
+                received.addAndGet(-counted); // partial bytes are fetched again
+                if (++attempt > retries) throw ex;
+                Thread.sleep(500L * attempt);
+            }
+        }
+    }
+
+    // AES-128-CBC with PKCS7 padding
+    private byte[] decrypt(StreamManifest.Key key, byte[] data, BooleanSupplier stopped)
+            throws IOException, InterruptedException {
+        byte[] k = key(key.uri, stopped);
+        try {
+            Cipher c = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            c.init(Cipher.DECRYPT_MODE, new SecretKeySpec(k, "AES"), new IvParameterSpec(key.iv));
+            return c.doFinal(data);
+        } catch (Exception e) {
+            throw new IOException("Fragment decryption failed", e);
+        }
+    }
+
+    // Fetched once per URI: fragments that need it while it loads wait instead of fetching it too
+    private byte[] key(URI uri, BooleanSupplier stopped) throws IOException, InterruptedException {
+        byte[] k = keys.get(uri);
+        if (k != null) return k;
+        synchronized (keys) {
+            k = keys.get(uri);
+            if (k != null) return k;
+            if (stopped.getAsBoolean()) throw new DownloadService.StoppedException();
+            HttpResponse<byte[]> r = client.send(request(uri, -1, -1), HttpResponse.BodyHandlers.ofByteArray());
+            if (r.statusCode() < 200 || r.statusCode() >= 300 || r.body().length != 16) {
+                throw new IOException("Cannot load AES-128 key (HTTP " + r.statusCode() + ")");
+            }
+            k = r.body();
+            keys.put(uri, k);
+            return k;
+        }
+    }
+
+    private HttpRequest request(URI uri, long offset, long length) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .GET();
+        boolean agent = false;
+        for (Map.Entry<String, String> h : headers.entrySet()) {
+            try {
+                b.header(h.getKey(), h.getValue());
+                agent |= h.getKey().equalsIgnoreCase("User-Agent");
+            } catch (IllegalArgumentException ignored) {
+                // restricted by HttpClient (Host, Connection, ...)
+            }
+        }
+        if (!agent) b.header("User-Agent", "GrabX/1.0");
+        if (offset >= 0 && length > 0) b.header("Range", "bytes=" + offset + "-" + (offset + length - 1));
+        return b.build();
+    }
+
+    // ============================
+    // Sidecar: "<fingerprint>\n<fragments written>\n<bytes written>"
+    // ============================
+
+    private static long[] readState(Path state, String fingerprint) {
+        try {
+            if (!Files.isRegularFile(state)) return null;
+            List<String> lines = Files.readAllLines(state, StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !fingerprint.equals(lines.get(0))) return null;
+            long done = Long.parseLong(lines.get(1).trim());
+            long bytes = Long.parseLong(lines.get(2).trim());
+            return (done >= 0 && bytes >= 0) ? new long[]{done, bytes} : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void writeState(Path state, String fingerprint, int done, long bytes) {
+        try {
+            Path tmp = state.resolveSibling(state.getFileName().toString() + ".tmp");
+            Files.writeString(tmp, fingerprint + "\n" + done + "\n" + bytes + "\n", StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, state, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, state, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception ignored) {
+            // best-effort: without it the next run starts over
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.grabx.app.grabx.core.service;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * HLS (RFC 8216) master and media playlists.
+ * <p>
+ * Pure text parsing: {@code base} is the playlist's own URI, used to resolve relative
+ * segment/key/map URIs, so fixtures can be parsed without any network access.
+ * Supports byte ranges, EXT-X-MAP init sections and AES-128; SAMPLE-AES is rejected.
+ */
+public final class HlsParser {
+
+    private HlsParser() {}
+
+    /** Master playlist (variants + audio renditions) or a single media playlist. */
+    public static StreamManifest parse(URI base, String text) {
+        if (text == null || !text.stripLeading().startsWith("#EXTM3U")) {
+            throw new IllegalArgumentException("Not an HLS playlist");
+        }
+        if (!text.contains("#EXT-X-STREAM-INF")) {
+            StreamManifest.Media media = parseMedia(base, text);
+            StreamManifest.Variant only = new StreamManifest.Variant(
+                    "0", 0, 0, 0, null, false, null, null, base, media);
+            return new StreamManifest(StreamManifest.Kind.HLS, List.of(only), List.of());
+        }
+        return parseMaster(base, text);
+    }
+
+    // ============================
+    // Master
+    // ============================
+    private static StreamManifest parseMaster(URI base, String text) {
+        List<StreamManifest.Variant> variants = new ArrayList<>();
+        List<StreamManifest.Variant> audio = new ArrayList<>();
+
+        Map<String, String> pendingInf = null;
+        int n = 0;
+        for (String raw : text.split("\\r?\\n")) {
+            String line = raw.trim();
+            if (line.isEmpty()) continue;
+
+            if (line.startsWith("#EXT-X-STREAM-INF:")) {
+                pendingInf = attributes(line.substring("#EXT-X-STREAM-INF:".length()));
+                continue;
+            }
+            if (line.startsWith("#EXT-X-MEDIA:")) {
+                Map<String, String> a = attributes(line.substring("#EXT-X-MEDIA:".length()));
+                if (!"AUDIO".equals(a.get("TYPE"))) continue;
+                String uri = a.get("URI");
+                audio.add(new StreamManifest.Variant(
+                        a.getOrDefault("NAME", "audio" + audio.size()),
+                        0, 0, 0, null, true,
+                        a.get("GROUP-ID"), a.get("LANGUAGE"),
+                        uri == null ? null : base.resolve(uri), null));
+                continue;
+            }
+            if (line.startsWith("#")) continue;
+
+            // URI line that belongs to the preceding EXT-X-STREAM-INF
+            if (pendingInf != null) {
+                int w = 0, h = 0;
+                String res = pendingInf.get("RESOLUTION");
+                if (res != null && res.indexOf('x') > 0) {
+                    w = parseInt(res.substring(0, res.indexOf('x')));
+                    h = parseInt(res.substring(res.indexOf('x') + 1));
+                }
+                long bw = parseLong(pendingInf.getOrDefault("AVERAGE-BANDWIDTH", pendingInf.get("BANDWIDTH")));
+                String codecs = pendingInf.get("CODECS");
+                boolean audioOnly = h == 0 && codecs != null && !hasVideoCodec(codecs);
+                variants.add(new StreamManifest.Variant(
+                        String.valueOf(n++), bw, w, h, codecs, audioOnly,
+                        pendingInf.get("AUDIO"), null, base.resolve(line), null));
+                pendingInf = null;
+            }
+        }
+
+        if (variants.isEmpty()) throw new IllegalArgumentException("HLS master playlist has no variants");
+        return new StreamManifest(StreamManifest.Kind.HLS, variants, audio);
+    }
+
+    // ============================
+    // Media
+    // ============================
+
+    /** Segments of a media playlist, with byte ranges, keys and the init section resolved. */
+    public static StreamManifest.Media parseMedia(URI base, String text) {
+        List<StreamManifest.Fragment> fragments = new ArrayList<>();
+        StreamManifest.Fragment init = null;
+        boolean endList = false;
+        boolean vod = false;
+
+        long sequence = 0;
+        StreamManifest.Key key = null;
+        URI keyUri = null;
+        byte[] explicitIv = null;
+
+        long pendingLength = -1;
+        long pendingOffset = -1;
+        boolean inSegment = false;
+        Map<URI, Long> nextOffset = new HashMap<>();
+
+        for (String raw : text.split("\\r?\\n")) {
+            String line = raw.trim();
+            if (line.isEmpty()) continue;
+
+            if (line.startsWith("#EXT-X-MEDIA-SEQUENCE:")) {
+                sequence = parseLong(line.substring("#EXT-X-MEDIA-SEQUENCE:".length()));
+            } else if (line.startsWith("#EXT-X-ENDLIST")) {
+                endList = true;
+            } else if (line.startsWith("#EXT-X-PLAYLIST-TYPE:")) {
+                vod = line.endsWith("VOD");
+            } else if (line.startsWith("#EXT-X-KEY:")) {
+                Map<String, String> a = attributes(line.substring("#EXT-X-KEY:".length()));
+                String method = a.getOrDefault("METHOD", "NONE");
+                if ("NONE".equals(method)) {
+                    keyUri = null;
+                    explicitIv = null;
+                } else if ("AES-128".equals(method)) {
+                    if (a.get("URI") == null) throw new IllegalArgumentException("AES-128 key without URI");
+                    keyUri = base.resolve(a.get("URI"));
+                    explicitIv = a.containsKey("IV") ? parseIv(a.get("IV")) : null;
+                } else {
+                    throw new IllegalArgumentException("Unsupported HLS encryption: " + method);
+                }
+            } else if (line.startsWith("#EXT-X-MAP:")) {
+                Map<String, String> a = attributes(line.substring("#EXT-X-MAP:".length()));
+                if (a.get("URI") == null) continue;
+                URI u = base.resolve(a.get("URI"));
+                // an init section without "@offset" starts at byte 0 (RFC 8216 4.3.2.5)
+                long[] br = parseByteRange(a.get("BYTERANGE"), 0);
+                StreamManifest.Key k = (keyUri == null) ? null
+                        : new StreamManifest.Key(keyUri, explicitIv != null ? explicitIv : ivFor(sequence));
+                init = new StreamManifest.Fragment(u, br == null ? -1 : br[1], br == null ? -1 : br[0], k);
+            } else if (line.startsWith("#EXTINF:")) {
+                inSegment = true;
+            } else if (line.startsWith("#EXT-X-BYTERANGE:")) {
+                long[] br = parseByteRange(line.substring("#EXT-X-BYTERANGE:".length()), -1);
+                if (br != null) {
+                    pendingLength = br[0];
+                    pendingOffset = br[1];
+                }
+            } else if (!line.startsWith("#") && inSegment) {
+                URI u = base.resolve(line);
+                long off = -1, len = -1;
+                if (pendingLength > 0) {
+                    len = pendingLength;
+                    // no "@offset": continues right after the previous sub-range of the same resource
+                    off = pendingOffset >= 0 ? pendingOffset : nextOffset.getOrDefault(u, 0L);
+                    nextOffset.put(u, off + len);
+                }
+                key = (keyUri == null) ? null
+                        : new StreamManifest.Key(keyUri, explicitIv != null ? explicitIv : ivFor(sequence));
+                fragments.add(new StreamManifest.Fragment(u, off, len, key));
+
+                sequence++;
+                inSegment = false;
+                pendingLength = -1;
+                pendingOffset = -1;
+            }
+        }
+
+        if (fragments.isEmpty()) throw new IllegalArgumentException("HLS media playlist has no segments");
+        return new StreamManifest.Media(init, fragments, !endList && !vod, extensionFor(init, fragments.get(0)));
+    }
+
+    private static String extensionFor(StreamManifest.Fragment init, StreamManifest.Fragment first) {
+        if (init != null) return "mp4";
+        String path = first.uri.getPath() == null ? "" : first.uri.getPath().toLowerCase(Locale.ROOT);
+        if (path.endsWith(".aac")) return "aac";
+        if (path.endsWith(".mp3")) return "mp3";
+        if (path.endsWith(".m4s") || path.endsWith(".mp4") || path.endsWith(".m4a")) return "mp4";
+        return "ts";
+    }
+
+    // ============================
+    // Helpers
+    // ============================
+
+    /** Attribute list: KEY=VALUE pairs, quoted values may contain commas. */
+    static Map<String, String> attributes(String s) {
+        Map<String, String> out = new HashMap<>();
+        int i = 0;
+        while (i < s.length()) {
+            int eq = s.indexOf('=', i);
+            if (eq < 0) break;
+            String k = s.substring(i, eq).trim();
+            int j = eq + 1;
+            String v;
+            if (j < s.length() && s.charAt(j) == '"') {
+                int end = s.indexOf('"', j + 1);
+                if (end < 0) end = s.length();
+                v = s.substring(j + 1, end);
+                j = end + 1;
+                int comma = s.indexOf(',', j);
+                i = comma < 0 ? s.length() : comma + 1;
+            } else {
+                int comma = s.indexOf(',', j);
+                v = s.substring(j, comma < 0 ? s.length() : comma).trim();
+                i = comma < 0 ? s.length() : comma + 1;
+            }
+            if (!k.isEmpty()) out.put(k, v);
+        }
+        return out;
+    }
+
+    // "length[@offset]" -> {length, offset or dflt}
+    private static long[] parseByteRange(String s, long dflt) {
+        if (s == null || s.isBlank()) return null;
+        int at = s.indexOf('@');
+        long len = parseLong(at < 0 ? s : s.substring(0, at));
+        long off = at < 0 ? dflt : parseLong(s.substring(at + 1));
+        return len > 0 ? new long[]{len, off} : null;
+    }
+
+    // Default IV: the media sequence number as a 128-bit big-endian integer
+    private static byte[] ivFor(long sequence) {
+        byte[] iv = new byte[16];
+        for (int i = 0; i < 8; i++) iv[15 - i] = (byte) (sequence >>> (8 * i));
+        return iv;
+    }
+
+    private static byte[] parseIv(String hex) {
+        String h = hex.startsWith("0x") || hex.startsWith("0X") ? hex.substring(2) : hex;
+        byte[] raw = new BigInteger(h, 16).toByteArray();
+        byte[] iv = new byte[16];
+        int n = Math.min(16, raw.length);
+        System.arraycopy(raw, raw.length - n, iv, 16 - n, n);
+        return iv;
+    }
+
+    private static boolean hasVideoCodec(String codecs) {
+        String c = codecs.toLowerCase(Locale.ROOT);
+        return c.contains("avc") || c.contains("hvc") || c.contains("hev") || c.contains("vp0")
+                || c.contains("vp8") || c.contains("vp9") || c.contains("av01");
+    }
+
+    private static int parseInt(String s) {
+        try { return Integer.parseInt(s.trim()); } catch (Exception e) { return 0; }
+    }
+
+    private static long parseLong(String s) {
+        try { return s == null ? 0 : Long.parseLong(s.trim()); } catch (Exception e) { return 0; }
+    }
+}
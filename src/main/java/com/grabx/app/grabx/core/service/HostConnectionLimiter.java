@@ -0,0 +1,124 @@
+package com.grabx.app.grabx.core.service;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Per-host connection budget.
+ * <p>
+ * Callers {@link #tryAcquire(String)} a slot for a host before opening work against it and
+ * {@link #release(String)} it when done. {@link #lastServed(String)} gives a monotonic
+ * "last granted" tick per host so queues can pick the least recently served host
+ * (round-robin) instead of draining one domain first. Waiting counts are reported by the
+ * queues themselves and only used for diagnostics.
+ */
+public class HostConnectionLimiter {
+
+    /** Active/queued counters of one host at the time of {@link #snapshot()}. */
+    public static final class HostStats {
+        public final int active;
+        public final int queued;
+
+        HostStats(int active, int queued) {
+            this.active = active;
+            this.queued = queued;
+        }
+
+        @Override
+        public String toString() {
+            return active + " active, " + queued + " queued";
+        }
+    }
+
+    private static final class Counter {
+        int active;
+        int queued;
+        long lastServed;
+    }
+
+    private final Map<String, Counter> hosts = new HashMap<>();
+    private int perHostLimit;
+    private long tick = 0;
+
+    public HostConnectionLimiter(int perHostLimit) {
+        this.perHostLimit = Math.max(1, perHostLimit);
+    }
+
+    /** Host key for a URL: lower-case host without "www." ("" when it can't be parsed). */
+    public static String hostOf(String url) {
+        if (url == null || url.isBlank()) return "";
+        try {
+            String h = URI.create(url.trim()).getHost();
+            if (h == null) return "";
+            h = h.toLowerCase(Locale.ROOT);
+            return h.startsWith("www.") ? h.substring(4) : h;
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    public synchronized int getPerHostLimit() {
+        return perHostLimit;
+    }
+
+    public synchronized void setPerHostLimit(int n) {
+        perHostLimit = Math.max(1, n);
+    }
+
+    public synchronized boolean canAcquire(String host) {
+        Counter c = hosts.get(key(host));
+        return c == null || c.active < perHostLimit;
+    }
+
+    public synchronized boolean tryAcquire(String host) {
+        Counter c = hosts.computeIfAbsent(key(host), k -> new Counter());
+        if (c.active >= perHostLimit) return false;
+        c.active++;
+        c.lastServed = ++tick;
+        return true;
+    }
+
+    public synchronized void release(String host) {
+        String k = key(host);
+        Counter c = hosts.get(k);
+        if (c == null) return;
+        if (c.active > 0) c.active--;
+        prune(k, c);
+    }
+
+    /** 0 for a host that was never served; higher = served more recently. */
+    public synchronized long lastServed(String host) {
+        Counter c = hosts.get(key(host));
+        return c == null ? 0 : c.lastServed;
+    }
+
+    /** Queues report their waiting items per host (+1 when queued, -1 when started/dropped). */
+    public synchronized void addQueued(String host, int delta) {
+        String k = key(host);
+        Counter c = hosts.computeIfAbsent(k, x -> new Counter());
+        c.queued = Math.max(0, c.queued + delta);
+        prune(k, c);
+    }
+
+    /** Per-host active/queued counts, busiest host first. */
+    public synchronized Map<String, HostStats> snapshot() {
+        List<Map.Entry<String, Counter>> list = new ArrayList<>(hosts.entrySet());
+        list.sort((a, b) -> Integer.compare(b.getValue().active + b.getValue().queued,
+                a.getValue().active + a.getValue().queued));
+
+        Map<String, HostStats> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> e : list) {
+            out.put(e.getKey(), new HostStats(e.getValue().active, e.getValue().queued));
+        }
+        return out;
+    }
+
+    // Keep lastServed while the host still has work, drop idle hosts so the map stays small
+    private void prune(String k, Counter c) {
+        if (c.active == 0 && c.queued == 0) hosts.remove(k);
+    }
+
+    private static String key(String host) {
+        return host == null ? "" : host;
+    }
+}
@@ -0,0 +1,118 @@
+package com.grabx.app.grabx.core.service;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Front queue for a small worker pool that round-robins between hosts.
+ * <p>
+ * Tasks wait here in one FIFO per host; a task is handed to the delegate only when the
+ * delegate has a free worker ({@code maxInFlight}) and its host is under the
+ * {@link HostConnectionLimiter} budget. Hosts are served least-recently-served first, so
+ * a big batch from one domain cannot starve the others. Like the bounded pools it wraps,
+ * it rejects new work once {@code maxPending} tasks are waiting.
+ */
+public class HostFairExecutor {
+
+    private final HostConnectionLimiter limiter;
+    private final Executor delegate;
+    private final int maxInFlight;
+    private final int maxPending;
+
+    private final Map<String, ArrayDeque<Runnable>> pending = new LinkedHashMap<>();
+    private int pendingCount = 0;
+    private int inFlight = 0;
+
+    public HostFairExecutor(HostConnectionLimiter limiter, Executor delegate, int maxInFlight, int maxPending) {
+        this.limiter = Objects.requireNonNull(limiter, "limiter");
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    public HostConnectionLimiter getLimiter() {
+        return limiter;
+    }
+
+    /** Queue {@code task} for the host of {@code url}. */
+    public void execute(String url, Runnable task) {
+        Objects.requireNonNull(task, "task");
+        String host = HostConnectionLimiter.hostOf(url);
+
+        synchronized (this) {
+            if (pendingCount >= maxPending) throw new RejectedExecutionException("Queue full");
+            pending.computeIfAbsent(host, h -> new ArrayDeque<>()).addLast(task);
+            pendingCount++;
+        }
+        limiter.addQueued(host, 1);
+        pump();
+    }
+
+    public synchronized int pendingCount() {
+        return pendingCount;
+    }
+
+    private void pump() {
+        while (true) {
+            String host;
+            Runnable task;
+
+            synchronized (this) {
+                if (inFlight >= maxInFlight) return;
+
+                host = pickHost();
+                if (host == null) return;
+
+                ArrayDeque<Runnable> q = pending.get(host);
+                task = q.pollFirst();
+                if (q.isEmpty()) pending.remove(host);
+                pendingCount--;
+                inFlight++;
+            }
+            limiter.addQueued(host, -1);
+
+            final String h = host;
+            final Runnable t = task;
+            Runnable wrapped = () -> {
+                try {
+                    t.run();
+                } finally {
+                    finished(h);
+                }
+            };
+            try {
+                delegate.execute(wrapped);
+            } catch (RuntimeException ex) {
+                // delegate refused (shut down / saturated by other callers): don't lose the task
+                Thread th = new Thread(wrapped, "host-fair-fallback");
+                th.setDaemon(true);
+                th.start();
+            }
+        }
+    }
+
+    // Least recently served host that still has room (caller holds the lock); acquires its slot
+    private String pickHost() {
+        String best = null;
+        long bestTick = Long.MAX_VALUE;
+        for (String h : pending.keySet()) {
+            if (!limiter.canAcquire(h)) continue;
+            long t = limiter.lastServed(h);
+            if (t < bestTick) {
+                best = h;
+                bestTick = t;
+            }
+        }
+        if (best != null && !limiter.tryAcquire(best)) return null;
+        return best;
+    }
+
+    private void finished(String host) {
+        limiter.release(host);
+        synchronized (this) {
+            inFlight--;
+        }
+        pump();
+    }
+}
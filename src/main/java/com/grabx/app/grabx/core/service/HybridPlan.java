@@ -0,0 +1,209 @@
+package com.grabx.app.grabx.core.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * What yt-dlp resolved for one video ({@code -J} with the download's format selector):
+ * the final media URLs with the headers they need, and the file name yt-dlp would write.
+ * <p>
+ * Used by the hybrid mode, where yt-dlp only extracts and the native engine moves the bytes.
+ * Progressive HTTP(S) formats go to the segmented engine, HLS ({@code m3u8}/{@code m3u8_native})
+ * and DASH fragment lists to {@link FragmentDownloader}. Live streams, DRM and anything else stay with yt-dlp.
+ */
+public final class HybridPlan {
+
+    public static final class Stream {
+        public final String formatId;
+        public final String url;
+        public final Map<String, String> headers;
+        public final String ext;
+        public final String protocol;
+        public final long sizeHint;  // filesize or filesize_approx, -1 if unknown
+        public final boolean hasVideo;
+        private final List<URI> fragments; // DASH fragment URLs in order, null if the format has none
+
+        Stream(String formatId, String url, Map<String, String> headers, String ext, String protocol,
+               long sizeHint, boolean hasVideo, List<URI> fragments) {
+            this.formatId = formatId;
+            this.url = url;
+            this.headers = Map.copyOf(headers);
+            this.ext = ext;
+            this.protocol = protocol;
+            this.sizeHint = sizeHint;
+            this.hasVideo = hasVideo;
+            this.fragments = (fragments == null) ? null : List.copyOf(fragments);
+        }
+
+        /** One plain file: the segmented engine can range it. */
+        public boolean isProgressiveHttp() {
+            return url != null && !url.isBlank() && fragments == null
+                    && ("https".equals(protocol) || "http".equals(protocol));
+        }
+
+        /** {@link #url} is an HLS media playlist. */
+        public boolean isHls() {
+            return url != null && !url.isBlank() && ("m3u8_native".equals(protocol) || "m3u8".equals(protocol));
+        }
+
+        /** DASH format whose fragments yt-dlp already listed (see {@link #dashMedia()}). */
+        public boolean isDash() {
+            return fragments != null && !fragments.isEmpty() && "http_dash_segments".equals(protocol);
+        }
+
+        /** The DASH fragments as fragment-engine media (the init section is yt-dlp's first fragment). */
+        public StreamManifest.Media dashMedia() {
+            if (!isDash()) throw new IllegalStateException("Not a DASH format: " + protocol);
+            List<StreamManifest.Fragment> list = new ArrayList<>(fragments.size());
+            for (URI u : fragments) list.add(new StreamManifest.Fragment(u, -1, -1, null));
+            return new StreamManifest.Media(null, list, false, ext == null ? "mp4" : ext);
+        }
+    }
+
+    public final String title;
+    /** Full output path yt-dlp would use with the given -o template (merged extension). */
+    public final String filename;
+    public final String ext;
+    public final List<Stream> streams;
+    /** Live/upcoming, or flagged as DRM-protected: never taken over. */
+    public final boolean liveOrDrm;
+
+    private HybridPlan(String title, String filename, String ext, List<Stream> streams, boolean liveOrDrm) {
+        this.title = title;
+        this.filename = filename;
+        this.ext = ext;
+        this.streams = List.copyOf(streams);
+        this.liveOrDrm = liveOrDrm;
+    }
+
+    /** One file, or a video + audio pair to merge, each progressive, HLS or DASH. */
+    public boolean isEligible() {
+        if (liveOrDrm || streams.isEmpty() || streams.size() > 2) return false;
+        for (Stream s : streams) {
+            if (!s.isProgressiveHttp() && !s.isHls() && !s.isDash()) return false;
+        }
+        return true;
+    }
+
+    /** Every stream is a plain file (what the pipe merge can stream). */
+    public boolean isProgressive() {
+        for (Stream s : streams) {
+            if (!s.isProgressiveHttp()) return false;
+        }
+        return !streams.isEmpty();
+    }
+
+    /** Parse yt-dlp's {@code -J} output (leading non-JSON lines are skipped). */
+    public static HybridPlan parse(String json) throws IOException {
+        if (json == null) throw new IOException("No output from yt-dlp");
+        int brace = json.indexOf('{');
+        if (brace < 0) throw new IOException("yt-dlp returned no JSON");
+
+        JsonNode root = new ObjectMapper().readTree(json.substring(brace));
+        if (root == null || !root.isObject()) throw new IOException("yt-dlp returned no JSON");
+        if (root.has("entries")) throw new IOException("Playlists are not handled by the hybrid mode");
+
+        String liveStatus = text(root, "live_status");
+        boolean liveOrDrm = root.path("is_live").asBoolean(false)
+                || "is_live".equals(liveStatus) || "is_upcoming".equals(liveStatus)
+                || root.path("has_drm").asBoolean(false);
+
+        List<Stream> streams = new ArrayList<>();
+        JsonNode requested = root.get("requested_formats");
+        if (requested != null && requested.isArray() && requested.size() > 0) {
+            for (JsonNode f : requested) {
+                liveOrDrm |= f.path("has_drm").asBoolean(false);
+                streams.add(stream(f, root));
+            }
+        } else if (root.hasNonNull("url")) {
+            streams.add(stream(root, root));
+        }
+
+        String filename = text(root, "filename");
+        if (filename == null) filename = text(root, "_filename");
+        return new HybridPlan(text(root, "title"), filename, text(root, "ext"), streams, liveOrDrm);
+    }
+
+    private static Stream stream(JsonNode f, JsonNode root) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        JsonNode h = f.has("http_headers") ? f.get("http_headers") : root.get("http_headers");
+        if (h != null && h.isObject()) {
+            h.fields().forEachRemaining(e -> {
+                if (e.getValue().isTextual()) headers.put(e.getKey(), e.getValue().asText());
+            });
+        }
+        // Cookies yt-dlp used during extraction (e.g. age/consent gates)
+        String cookies = text(f, "cookies");
+        if (cookies != null && !headers.containsKey("Cookie")) headers.put("Cookie", cookieHeader(cookies));
+
+        long size = f.path("filesize").asLong(-1);
+        if (size <= 0) size = f.path("filesize_approx").asLong(-1);
+
+        String vcodec = text(f, "vcodec");
+        boolean video = vcodec == null ? f.path("height").asInt(0) > 0 : !"none".equals(vcodec);
+
+        String protocol = text(f, "protocol");
+        if (protocol == null) {
+            String url = text(f, "url");
+            protocol = (url != null && url.startsWith("https:")) ? "https" : "http";
+        }
+        return new Stream(text(f, "format_id"), text(f, "url"), headers, text(f, "ext"), protocol,
+                size > 0 ? size : -1, video, fragments(f));
+    }
+
+    // "fragments" means the URL is not the whole file even if the protocol says http.
+    // Entries carry a full "url" or a "path" relative to fragment_base_url; byte-ranged ones are left out
+    // (an empty list keeps the format non-progressive without making it eligible as DASH).
+    private static List<URI> fragments(JsonNode f) {
+        JsonNode list = f.get("fragments");
+        if (list == null) return null;
+        if (!list.isArray()) return List.of();
+
+        String base = text(f, "fragment_base_url");
+        List<URI> out = new ArrayList<>(list.size());
+        try {
+            for (JsonNode frag : list) {
+                if (frag.has("byte_range") || frag.has("range")) return List.of();
+                String url = text(frag, "url");
+                if (url != null) {
+                    out.add(URI.create(url));
+                } else {
+                    String path = text(frag, "path");
+                    if (path == null || base == null) return List.of();
+                    out.add(URI.create(base).resolve(path));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+        return out;
+    }
+
+    // yt-dlp serialises cookies as "Set-Cookie"-like lines: "name=value; Domain=...; Path=..."
+    private static String cookieHeader(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : s.split(";")) {
+            String p = part.trim();
+            int eq = p.indexOf('=');
+            if (eq <= 0) continue;
+            String k = p.substring(0, eq).trim();
+            String lk = k.toLowerCase(Locale.ROOT);
+            if (lk.equals("domain") || lk.equals("path") || lk.equals("expires") || lk.equals("max-age")
+                    || lk.equals("secure") || lk.equals("httponly") || lk.equals("samesite")) continue;
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(p);
+        }
+        return sb.toString();
+    }
+
+    private static String text(JsonNode n, String field) {
+        JsonNode v = (n == null) ? null : n.get(field);
+        if (v == null || v.isNull()) return null;
+        String s = v.asText();
+        return s.isBlank() ? null : s;
+    }
+}
@@ -0,0 +1,104 @@
+package com.grabx.app.grabx.core.service;
+
+import java.util.*;
+
+/**
+ * Equivalent URLs for one direct file, with a per-connection throughput estimate for each.
+ * <p>
+ * New connections go to the mirror that currently delivers the most per connection. A mirror
+ * that has not been used for a while is handed out once so its estimate does not go stale,
+ * and running segments move off a mirror that falls well behind the best one.
+ * Mirrors are only put in a set after {@link DownloadService#probeMirrors} checked that they serve the same bytes.
+ */
+public final class MirrorSet {
+
+    private static final double SWITCH_RATIO = 1.5;               // leave when the best is this much faster
+    private static final long SWITCH_MIN_AGE_NS = 3_000_000_000L;  // give a connection time to ramp up first
+    private static final long SWITCH_MIN_BYTES = 1024L * 1024L;    // a reconnect is not worth it for the last bit
+    private static final long EXPLORE_NS = 15_000_000_000L;
+    private static final int MAX_FAILURES = 3;
+
+    public static final class Mirror {
+        public final String url;
+        volatile double bytesPerSecond; // per connection
+        volatile long lastUsedNanos;
+        volatile int failures;
+        volatile boolean disabled;
+
+        Mirror(String url, double seedBytesPerSecond) {
+            this.url = url;
+            this.bytesPerSecond = seedBytesPerSecond;
+            this.lastUsedNanos = System.nanoTime();
+        }
+
+        public double bytesPerSecond() { return bytesPerSecond; }
+
+        public boolean isDisabled() { return disabled; }
+    }
+
+    private final List<Mirror> mirrors;
+
+    MirrorSet(List<Mirror> mirrors) {
+        if (mirrors == null || mirrors.isEmpty()) throw new IllegalArgumentException("mirrors");
+        this.mirrors = List.copyOf(mirrors);
+    }
+
+    public List<Mirror> mirrors() {
+        return mirrors;
+    }
+
+    public int size() {
+        return mirrors.size();
+    }
+
+    /** Fastest mirror that is still enabled (the first one if all were disabled). */
+    public Mirror best() {
+        Mirror best = null;
+        for (Mirror m : mirrors) {
+            if (m.disabled) continue;
+            if (best == null || m.bytesPerSecond > best.bytesPerSecond) best = m;
+        }
+        return best != null ? best : mirrors.get(0);
+    }
+
+    /** Mirror for a new connection: a stale one to re-measure, otherwise the best. */
+    public synchronized Mirror pick() {
+        long now = System.nanoTime();
+        for (Mirror m : mirrors) {
+            if (!m.disabled && now - m.lastUsedNanos > EXPLORE_NS) {
+                m.lastUsedNanos = now;
+                return m;
+            }
+        }
+        Mirror best = best();
+        best.lastUsedNanos = now;
+        return best;
+    }
+
+    /** Should a segment that has been on {@code m} since {@code sinceNanos} reconnect elsewhere? */
+    public boolean shouldLeave(Mirror m, long sinceNanos, long remaining) {
+        if (m == null) return false;
+        if (m.disabled) return true;
+        if (remaining < SWITCH_MIN_BYTES || System.nanoTime() - sinceNanos < SWITCH_MIN_AGE_NS) return false;
+        Mirror best = best();
+        return best != m && best.bytesPerSecond > m.bytesPerSecond * SWITCH_RATIO;
+    }
+
+    /** Progress-loop sample: average bytes/sec of the connections currently on {@code m}. */
+    void observe(Mirror m, double perConnectionBytesPerSecond) {
+        m.lastUsedNanos = System.nanoTime();
+        double cur = m.bytesPerSecond;
+        m.bytesPerSecond = (cur <= 0) ? perConnectionBytesPerSecond : cur * 0.7 + perConnectionBytesPerSecond * 0.3;
+    }
+
+    /** A connection to {@code m} failed; after a few failures it is no longer used (never the last one). */
+    synchronized void failed(Mirror m) {
+        if (m == null || ++m.failures < MAX_FAILURES) return;
+        for (Mirror o : mirrors) {
+            if (o != m && !o.disabled) {
+                m.disabled = true;
+                return;
+            }
+        }
+    }
+}
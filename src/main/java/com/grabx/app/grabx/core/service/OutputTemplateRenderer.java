@@ -0,0 +1,117 @@
+package com.grabx.app.grabx.core.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The part of yt-dlp's output template language the app uses ({@code %(title)s},
+ * {@code %(height)s}, {@code %(ext)s}, {@code %(autonumber)d}, plain {@code %(id)s}),
+ * rendered in Java from a video's info JSON so the file name is known without spawning
+ * {@code yt-dlp --print filename}.
+ * <p>
+ * Field values go through {@link #sanitize(String)}, which follows yt-dlp's default
+ * {@code sanitize_filename} (not {@code --restrict-filenames}, not the
+ * {@code filename-sanitization} compat option). Missing fields render as "NA", like yt-dlp.
+ */
+public final class OutputTemplateRenderer {
+
+    private static final Pattern FIELD = Pattern.compile("%\\((\\w+)\\)([sd])");
+    private static final Pattern TIMESTAMP = Pattern.compile("[0-9]+(?::[0-9]+)+");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private OutputTemplateRenderer() {}
+
+    /** Template fields of the default selection ({@code bv*+ba/b}) in a {@code -J} dump; null if unusable. */
+    public static Map<String, Object> fieldsFromInfoJson(String json) {
+        if (json == null) return null;
+        int brace = json.indexOf('{');
+        if (brace < 0) return null;
+        try {
+            JsonNode root = MAPPER.readTree(json.substring(brace));
+            if (root == null || !root.isObject() || root.has("entries")) return null;
+
+            Map<String, Object> f = new HashMap<>();
+            putText(f, root, "title");
+            putText(f, root, "id");
+            putText(f, root, "ext");
+            int h = root.path("height").asInt(0);
+            if (h <= 0) {
+                // No top-level height (e.g. split formats without a merged entry): best video height
+                for (JsonNode fmt : root.path("formats")) {
+                    if ("none".equals(fmt.path("vcodec").asText(""))) continue;
+                    h = Math.max(h, fmt.path("height").asInt(0));
+                }
+            }
+            if (h > 0) f.put("height", h);
+            return f.containsKey("title") ? f : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Render {@code template} with sanitized {@code fields}; "NA" for missing ones. */
+    public static String render(String template, Map<String, ?> fields) {
+        Matcher m = FIELD.matcher(template);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            Object v = fields.get(m.group(1));
+            String out;
+            if (v == null) {
+                out = "NA";
+            } else if ("d".equals(m.group(2))) {
+                out = (v instanceof Number n) ? Long.toString(n.longValue()) : "NA";
+            } else {
+                out = sanitize(String.valueOf(v));
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(out));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * yt-dlp's default field sanitization: characters that are illegal on some file system
+     * become their full-width look-alikes, "/" and "\" become U+29F8/U+29F9, timestamps
+     * like "12:30" become "12_30", control characters are dropped and newlines become spaces
+     * (trimmed at the ends, with the separators next to them).
+     */
+    public static String sanitize(String s) {
+        if (s == null || s.isEmpty()) return "";
+
+        Matcher ts = TIMESTAMP.matcher(s);
+        StringBuilder pre = new StringBuilder();
+        while (ts.find()) ts.appendReplacement(pre, Matcher.quoteReplacement(ts.group().replace(':', '_')));
+        ts.appendTail(pre);
+
+        // '\0' marks a substitute (only newlines produce one) so runs/ends can be cleaned below
+        StringBuilder r = new StringBuilder(pre.length());
+        pre.codePoints().forEach(c -> {
+            if (c == '\n') {
+                r.append('\0').append(' ');
+            } else if ("\"*:<>?|/\\".indexOf(c) >= 0) {
+                if (c == '/') r.append('\u29F8');
+                else if (c == '\\') r.append('\u29F9');
+                else r.appendCodePoint(c + 0xFEE0);
+            } else if (c < 32 || c == 127) {
+                // dropped
+            } else {
+                r.appendCodePoint(c);
+            }
+        });
+
+        String out = r.toString()
+                .replaceAll("(\0 )(?:\0 )+", "$1")
+                .replaceAll("^\0 (?:\0.|[ _-])*|(?:\0.|[ _-])*\0 $", "")
+                .replace("\0", "");
+        return out.isEmpty() ? "_" : out;
+    }
+
+    private static void putText(Map<String, Object> f, JsonNode root, String field) {
+        JsonNode v = root.get(field);
+        if (v != null && !v.isNull() && !v.asText().isBlank()) f.put(field, v.asText());
+    }
+}
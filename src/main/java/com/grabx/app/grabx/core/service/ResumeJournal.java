@@ -0,0 +1,185 @@
+package com.grabx.app.grabx.core.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Sidecar journal for a native transfer ("name.ext.part.grabx" next to the ".part" file).
+ * <p>
+ * Records the source URL, the validators seen when the transfer started (ETag / Last-Modified),
+ * the total length and the byte ranges that are already on disk. It is rewritten
+ * atomically (temp file + fsync + rename) and only after the ".part" data itself was forced,
+ * so after a crash it never claims bytes the file does not hold.
+ */
+public final class ResumeJournal {
+
+    public static final String SUFFIX = ".grabx";
+    private static final int VERSION = 1;
+
+    public final String url;
+    public final String etag;
+    public final String lastModified;
+    public final long length;
+    /** Sorted, non-overlapping, inclusive [start, end] ranges already written. */
+    public final List<long[]> completed;
+
+    public ResumeJournal(String url, String etag, String lastModified, long length, List<long[]> completed) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.completed = normalize(completed);
+    }
+
+    /** Journal path for a ".part" file. */
+    public static Path pathFor(Path part) {
+        return part.resolveSibling(part.getFileName().toString() + SUFFIX);
+    }
+
+    public long completedBytes() {
+        long sum = 0;
+        for (long[] r : completed) sum += r[1] - r[0] + 1;
+        return sum;
+    }
+
+    /** Ranges of [0, length) that are not in {@link #completed}. */
+    public List<long[]> missing() {
+        List<long[]> out = new ArrayList<>();
+        long next = 0;
+        for (long[] r : completed) {
+            if (r[0] > next) out.add(new long[]{next, r[0] - 1});
+            next = Math.max(next, r[1] + 1);
+        }
+        if (next < length) out.add(new long[]{next, length - 1});
+        return out;
+    }
+
+    /**
+     * Same remote file? Length must match; a strong validator on both sides must match too.
+     * With no validator at all only the length can be checked.
+     */
+    public boolean matches(DownloadService.RemoteInfo info) {
+        if (info == null || info.length != length || length <= 0) return false;
+        if (etag != null && info.etag != null) return etag.equals(info.etag);
+        if (lastModified != null && info.lastModified != null) return lastModified.equals(info.lastModified);
+        return true;
+    }
+
+    // ============================
+    // Read / write
+    // ============================
+
+    /** Returns null when the journal is missing or unreadable. */
+    public static ResumeJournal read(Path file) {
+        try {
+            if (file == null || !Files.isRegularFile(file)) return null;
+
+            String url = null, etag = null, lm = null;
+            long length = -1;
+            int version = -1;
+            List<long[]> ranges = new ArrayList<>();
+
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int eq = line.indexOf('=');
+                if (eq <= 0) continue;
+                String k = line.substring(0, eq).trim();
+                String v = line.substring(eq + 1).trim();
+                switch (k) {
+                    case "version" -> version = Integer.parseInt(v);
+                    case "url" -> url = v.isEmpty() ? null : v;
+                    case "etag" -> etag = v.isEmpty() ? null : v;
+                    case "lastModified" -> lm = v.isEmpty() ? null : v;
+                    case "length" -> length = Long.parseLong(v);
+                    case "ranges" -> {
+                        for (String part : v.split(",")) {
+                            int dash = part.indexOf('-');
+                            if (dash <= 0) continue;
+                            long a = Long.parseLong(part.substring(0, dash).trim());
+                            long b = Long.parseLong(part.substring(dash + 1).trim());
+                            if (a >= 0 && b >= a) ranges.add(new long[]{a, b});
+                        }
+                    }
+                    default -> { }
+                }
+            }
+
+            if (version != VERSION || length <= 0) return null;
+            for (long[] r : ranges) {
+                if (r[1] >= length) return null;
+            }
+            return new ResumeJournal(url, etag, lm, length, ranges);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Atomic replace: write a temp file, fsync it, then rename over the journal. */
+    public void write(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("version=").append(VERSION).append('\n');
+        sb.append("url=").append(oneLine(url)).append('\n');
+        sb.append("etag=").append(oneLine(etag)).append('\n');
+        sb.append("lastModified=").append(oneLine(lastModified)).append('\n');
+        sb.append("length=").append(length).append('\n');
+        sb.append("ranges=");
+        for (int i = 0; i < completed.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(completed.get(i)[0]).append('-').append(completed.get(i)[1]);
+        }
+        sb.append('\n');
+
+        Path tmp = file.resolveSibling(file.getFileName().toString() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bb = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (bb.hasRemaining()) ch.write(bb);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static void delete(Path file) {
+        if (file == null) return;
+        try { Files.deleteIfExists(file); } catch (Exception ignored) {}
+        try { Files.deleteIfExists(file.resolveSibling(file.getFileName().toString() + ".tmp")); } catch (Exception ignored) {}
+    }
+
+    // ============================
+    // Helpers
+    // ============================
+
+    /** Sort and merge touching/overlapping ranges. */
+    static List<long[]> normalize(List<long[]> in) {
+        List<long[]> src = new ArrayList<>();
+        if (in != null) {
+            for (long[] r : in) {
+                if (r != null && r.length == 2 && r[0] >= 0 && r[1] >= r[0]) src.add(new long[]{r[0], r[1]});
+            }
+        }
+        src.sort(Comparator.comparingLong(r -> r[0]));
+
+        List<long[]> out = new ArrayList<>();
+        for (long[] r : src) {
+            long[] last = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (last != null && r[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                out.add(r);
+            }
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    private static String oneLine(String s) {
+        if (s == null) return "";
+        return s.replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,161 @@
+package com.grabx.app.grabx.core.service;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Parsed HLS playlist or DASH manifest, reduced to what the fragment engine needs.
+ * <p>
+ * {@link #variants} are the video (or muxed) choices, {@link #audio} the separate audio
+ * renditions. An HLS master only knows the URI of each media playlist ({@link Variant#playlist});
+ * its {@link Variant#media} is filled in once that playlist is fetched. DASH variants are complete.
+ */
+public final class StreamManifest {
+
+    public enum Kind { HLS, DASH }
+
+    /** AES-128 key for an HLS fragment (METHOD=AES-128); {@code iv} is never null. */
+    public static final class Key {
+        public final URI uri;
+        public final byte[] iv;
+
+        Key(URI uri, byte[] iv) {
+            this.uri = uri;
+            this.iv = iv;
+        }
+    }
+
+    /** One request: the whole resource, or {@code length} bytes from {@code offset}. */
+    public static final class Fragment {
+        public final URI uri;
+        public final long offset;  // -1 = whole resource
+        public final long length;  // -1 = whole resource
+        public final Key key;      // null = clear
+
+        Fragment(URI uri, long offset, long length, Key key) {
+            this.uri = uri;
+            this.offset = offset;
+            this.length = length;
+            this.key = key;
+        }
+
+        public boolean isRanged() { return offset >= 0 && length > 0; }
+    }
+
+    /** Everything needed to write one output file: optional init section, then fragments in order. */
+    public static final class Media {
+        public final Fragment init;
+        public final List<Fragment> fragments;
+        public final boolean live;
+        public final String extension; // "ts", "mp4", "m4a", ...
+
+        Media(Fragment init, List<Fragment> fragments, boolean live, String extension) {
+            this.init = init;
+            this.fragments = List.copyOf(fragments);
+            this.live = live;
+            this.extension = extension;
+        }
+
+        /** Init section (if any) followed by the fragments: the exact order they are written. */
+        public List<Fragment> all() {
+            if (init == null) return fragments;
+            List<Fragment> out = new ArrayList<>(fragments.size() + 1);
+            out.add(init);
+            out.addAll(fragments);
+            return out;
+        }
+    }
+
+    public static final class Variant {
+        public final String id;
+        public final long bandwidth;
+        public final int width;
+        public final int height;
+        public final String codecs;
+        public final boolean audioOnly;
+        public final String audioGroup;  // HLS AUDIO group id, null if none
+        public final String language;    // audio renditions
+        public final URI playlist;       // HLS media playlist (null for DASH)
+        public volatile Media media;     // null until an HLS media playlist is loaded
+
+        Variant(String id, long bandwidth, int width, int height, String codecs, boolean audioOnly,
+                String audioGroup, String language, URI playlist, Media media) {
+            this.id = id;
+            this.bandwidth = bandwidth;
+            this.width = width;
+            this.height = height;
+            this.codecs = codecs;
+            this.audioOnly = audioOnly;
+            this.audioGroup = audioGroup;
+            this.language = language;
+            this.playlist = playlist;
+            this.media = media;
+        }
+
+        @Override
+        public String toString() {
+            return (height > 0 ? height + "p " : "") + (bandwidth > 0 ? (bandwidth / 1000) + " kbps" : "")
+                    + (codecs == null ? "" : " " + codecs);
+        }
+    }
+
+    public final Kind kind;
+    public final List<Variant> variants;
+    public final List<Variant> audio;
+
+    StreamManifest(Kind kind, List<Variant> variants, List<Variant> audio) {
+        this.kind = kind;
+        this.variants = List.copyOf(variants);
+        this.audio = List.copyOf(audio);
+    }
+
+    /** Parse an HLS playlist or DASH MPD, whichever {@code text} is. */
+    public static StreamManifest parse(URI base, String text) {
+        if (text == null) throw new IllegalArgumentException("Empty manifest");
+        String t = (text.startsWith("\uFEFF") ? text.substring(1) : text).stripLeading();
+        if (t.startsWith("#EXTM3U")) return HlsParser.parse(base, t);
+        if (t.startsWith("<") && t.contains("<MPD")) return DashParser.parse(base, t);
+        throw new IllegalArgumentException("Not an HLS playlist or DASH manifest");
+    }
+
+    /** URL (or file name) that names an .m3u8/.mpd manifest. */
+    public static boolean looksLikeManifest(String urlOrName) {
+        if (urlOrName == null) return false;
+        String s = urlOrName.toLowerCase(Locale.ROOT);
+        int q = s.indexOf('?');
+        if (q >= 0) s = s.substring(0, q);
+        int h = s.indexOf('#');
+        if (h >= 0) s = s.substring(0, h);
+        return s.endsWith(".m3u8") || s.endsWith(".m3u") || s.endsWith(".mpd");
+    }
+
+    /**
+     * Best video variant whose height is at most {@code maxHeight} (0 = no cap); highest
+     * bandwidth wins among equals. Falls back to the smallest variant if none fits the cap.
+     */
+    public Variant pickVariant(int maxHeight) {
+        Variant best = null;
+        Variant smallest = null;
+        for (Variant v : variants) {
+            if (smallest == null || rank(v) < rank(smallest)) smallest = v;
+            if (maxHeight > 0 && v.height > maxHeight) continue;
+            if (best == null || rank(v) > rank(best)) best = v;
+        }
+        return best != null ? best : smallest;
+    }
+
+    /** Highest-bandwidth audio rendition that belongs to {@code video} (HLS group) or any (DASH). */
+    public Variant pickAudio(Variant video) {
+        Variant best = null;
+        for (Variant a : audio) {
+            if (kind == Kind.HLS && video != null && !Objects.equals(a.audioGroup, video.audioGroup)) continue;
+            if (kind == Kind.HLS && a.playlist == null) continue; // muxed into the video stream
+            if (best == null || a.bandwidth > best.bandwidth) best = a;
+        }
+        return best;
+    }
+
+    private static long rank(Variant v) {
+        return (long) v.height * 1_000_000_000L + v.bandwidth;
+    }
+}
@@ -0,0 +1,150 @@
+package com.grabx.app.grabx.core.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Digests a file while it is being written, so no second pass over the disk is needed.
+ * <p>
+ * Hashes need the bytes in order, but segments finish out of order. The hasher keeps a
+ * single "hashed up to" offset: the worker that writes right at that offset feeds its
+ * bytes directly ({@link #offer(long, ByteBuffer)}), and everything else is caught up from
+ * the just-written (still page-cached) region of the file ({@link #catchUp}).
+ */
+public final class StreamingHasher {
+
+    public enum Algorithm {
+        SHA256("SHA-256", 64),
+        MD5("MD5", 32),
+        CRC32C("CRC32C", 8);
+
+        public final String label;
+        public final int hexLength;
+
+        Algorithm(String label, int hexLength) {
+            this.label = label;
+            this.hexLength = hexLength;
+        }
+
+        /** Guess the algorithm of an expected hash from its hex length (null if unknown). */
+        public static Algorithm forHex(String hex) {
+            String h = normalizeHex(hex);
+            if (h == null) return null;
+            for (Algorithm a : values()) {
+                if (a.hexLength == h.length()) return a;
+            }
+            return null;
+        }
+    }
+
+    private static final long MAX_CATCH_UP_PER_CALL = 64L * 1024L * 1024L;
+
+    private final Map<Algorithm, MessageDigest> digests = new EnumMap<>(Algorithm.class);
+    private final CRC32C crc;
+    private long position = 0;
+    private Map<Algorithm, String> result;
+
+    public StreamingHasher(Set<Algorithm> algorithms) {
+        Set<Algorithm> algs = (algorithms == null || algorithms.isEmpty())
+                ? EnumSet.of(Algorithm.SHA256)
+                : EnumSet.copyOf(algorithms);
+        for (Algorithm a : algs) {
+            if (a == Algorithm.CRC32C) continue;
+            try {
+                digests.put(a, MessageDigest.getInstance(a.label));
+            } catch (Exception e) {
+                throw new IllegalStateException(a.label + " not available", e);
+            }
+        }
+        crc = algs.contains(Algorithm.CRC32C) ? new CRC32C() : null;
+    }
+
+    /** Offset up to which bytes have been digested. */
+    public synchronized long position() {
+        return position;
+    }
+
+    /**
+     * Digest {@code data} (position..limit) if it starts exactly at {@link #position()}.
+     * The buffer's position is left unchanged. Returns false when the bytes are not next in line.
+     */
+    public synchronized boolean offer(long filePos, ByteBuffer data) {
+        if (result != null || filePos != position) return false;
+        int n = data.remaining();
+        update(data.duplicate());
+        position += n;
+        return true;
+    }
+
+    /**
+     * Read and digest [position, frontier) from {@code ch}. With {@code bounded} the call stops
+     * after ~64 MiB so the progress loop stays responsive; the rest is picked up next time.
+     * The file is read without holding the lock, so segment workers calling {@link #offer}
+     * only wait for one chunk's digest update, not for the whole re-read.
+     */
+    public void catchUp(FileChannel ch, long frontier, ByteBuffer scratch, boolean bounded)
+            throws IOException {
+        long at;
+        synchronized (this) {
+            if (result != null) return;
+            at = position;
+        }
+        long stop = bounded ? Math.min(frontier, at + MAX_CATCH_UP_PER_CALL) : frontier;
+
+        while (at < stop) {
+            scratch.clear();
+            int want = (int) Math.min(scratch.capacity(), stop - at);
+            scratch.limit(want);
+            int n = ch.read(scratch, at);
+            if (n <= 0) throw new IOException("Short read while hashing at " + at);
+            scratch.flip();
+            synchronized (this) {
+                if (result != null) return;
+                if (position != at) { // an offer already digested these bytes
+                    at = position;
+                    continue;
+                }
+                update(scratch);
+                position += n;
+            }
+            at += n;
+        }
+    }
+
+    /** Finish all digests (lower-case hex). Further offers are ignored. */
+    public synchronized Map<Algorithm, String> finish() {
+        if (result != null) return result;
+        Map<Algorithm, String> out = new EnumMap<>(Algorithm.class);
+        for (Map.Entry<Algorithm, MessageDigest> e : digests.entrySet()) {
+            out.put(e.getKey(), HexFormat.of().formatHex(e.getValue().digest()));
+        }
+        if (crc != null) out.put(Algorithm.CRC32C, String.format(Locale.ROOT, "%08x", crc.getValue()));
+        result = Collections.unmodifiableMap(out);
+        return result;
+    }
+
+    // every digest gets its own view, so one pass does not consume the buffer for the next
+    private void update(ByteBuffer bb) {
+        for (MessageDigest md : digests.values()) md.update(bb.duplicate());
+        if (crc != null) crc.update(bb.duplicate());
+    }
+
+    /** Lower-case hex without spaces or an "algo:" prefix; null when it is not hex. */
+    public static String normalizeHex(String s) {
+        if (s == null) return null;
+        String t = s.trim();
+        int colon = t.indexOf(':');
+        if (colon >= 0) t = t.substring(colon + 1);
+        t = t.replace(" ", "").toLowerCase(Locale.ROOT);
+        if (t.isEmpty()) return null;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) return null;
+        }
+        return t;
+    }
+}
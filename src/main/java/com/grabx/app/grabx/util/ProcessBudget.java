@@ -0,0 +1,218 @@
+package com.grabx.app.grabx.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One budget for every child process the app starts (yt-dlp probes and downloads, ffmpeg,
+ * the Python probe workers), so a playlist session plus a few downloads can't pile up dozens
+ * of interpreters.
+ * <p>
+ * The budget is counted in units of roughly {@link #UNIT_BYTES} of RAM; each {@link Kind}
+ * has a weight (what one process of that kind costs) and a share of the total it may use,
+ * which keeps probes from starving downloads. The total follows the memory that is actually
+ * available: half of it, re-read every couple of seconds, within {@code [MIN, cores * 3]}.
+ * <p>
+ * Spawn sites call {@link #start(Kind, ProcessBuilder)} instead of {@link ProcessBuilder#start()};
+ * the permit is returned when the process exits.
+ */
+public final class ProcessBudget {
+
+    public enum Kind {
+        /** Short yt-dlp runs: -J, --print, flat playlist listing. */
+        PROBE(2, 50, true, ProcessPriority.INTERACTIVE),
+        /** A yt-dlp download (plus the ffmpeg it may start for merging). */
+        DOWNLOAD(3, 100, true, ProcessPriority.TRANSFER),
+        /** ffmpeg started by the app itself (merge, pipe merge). */
+        FFMPEG(1, 50, true, ProcessPriority.BACKGROUND),
+        /** Long-lived probe workers: counted, never kept waiting (the pool size is their limit). */
+        WORKER(3, 100, false, ProcessPriority.INTERACTIVE);
+
+        final int weight;
+        final int sharePercent;
+        final boolean waits;
+        final ProcessPriority priority; // default class when the spawn site doesn't pick one
+
+        Kind(int weight, int sharePercent, boolean waits, ProcessPriority priority) {
+            this.weight = weight;
+            this.sharePercent = sharePercent;
+            this.waits = waits;
+            this.priority = priority;
+        }
+    }
+
+    /** Running/waiting processes of one kind at the time of {@link #snapshot()}. */
+    public static final class KindStats {
+        public final int running;
+        public final int waiting;
+
+        KindStats(int running, int waiting) {
+            this.running = running;
+            this.waiting = waiting;
+        }
+
+        @Override
+        public String toString() {
+            return running + " running" + (waiting > 0 ? ", " + waiting + " waiting" : "");
+        }
+    }
+
+    public static final long UNIT_BYTES = 64L * 1024 * 1024;
+    private static final int MIN_CAPACITY = 8; // two probes + a download always fit
+    private static final long MEMORY_REFRESH_MS = 2000;
+
+    private static final ProcessBudget SHARED = new ProcessBudget();
+
+    // Lock + condition rather than synchronized/wait, so a virtual-thread caller would not pin its carrier while waiting
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<Kind, Integer> running = new EnumMap<>(Kind.class);
+    private final Map<Kind, Integer> waiting = new EnumMap<>(Kind.class);
+    private final int maxCapacity = Math.max(MIN_CAPACITY, Runtime.getRuntime().availableProcessors() * 3);
+    private int used = 0;
+    private int capacity = maxCapacity;
+    private long capacityReadAt = 0;
+
+    private ProcessBudget() {
+        for (Kind k : Kind.values()) {
+            running.put(k, 0);
+            waiting.put(k, 0);
+        }
+    }
+
+    public static ProcessBudget shared() { return SHARED; }
+
+    /**
+     * Wait for room for one process of {@code kind}, start it, and give the room back when it
+     * exits (or right away if it fails to start).
+     */
+    public Process start(Kind kind, ProcessBuilder pb) throws IOException, InterruptedException {
+        return start(kind, kind.priority, pb);
+    }
+
+    /** Like {@link #start(Kind, ProcessBuilder)}, in an explicit CPU/I/O priority class. */
+    public Process start(Kind kind, ProcessPriority priority, ProcessBuilder pb) throws IOException, InterruptedException {
+        acquire(kind);
+        Process p;
+        try {
+            p = priority.apply(pb).start();
+        } catch (IOException | RuntimeException e) {
+            release(kind);
+            throw e;
+        }
+        p.onExit().thenRun(() -> release(kind));
+        return p;
+    }
+
+    private void acquire(Kind kind) throws InterruptedException {
+        lock.lock();
+        try {
+            if (!kind.waits) {
+                take(kind);
+                return;
+            }
+            waiting.merge(kind, 1, Integer::sum);
+            try {
+                while (!fits(kind)) {
+                    // Timed: the memory reading can change without anyone releasing
+                    released.await(MEMORY_REFRESH_MS, TimeUnit.MILLISECONDS);
+                }
+                take(kind);
+            } finally {
+                waiting.merge(kind, -1, Integer::sum);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(Kind kind) {
+        if (used == 0) return true; // never block the only process, however low memory is
+        int cap = capacity();
+        int kindCap = Math.max(kind.weight, cap * kind.sharePercent / 100);
+        return used + kind.weight <= cap
+                && running.get(kind) * kind.weight + kind.weight <= kindCap;
+    }
+
+    private void take(Kind kind) {
+        running.merge(kind, 1, Integer::sum);
+        used += kind.weight;
+    }
+
+    private void release(Kind kind) {
+        lock.lock();
+        try {
+            if (running.get(kind) <= 0) return;
+            running.merge(kind, -1, Integer::sum);
+            used = Math.max(0, used - kind.weight);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Budget in units: what is in use plus half of the free memory, within bounds. */
+    public int capacity() {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (now - capacityReadAt >= MEMORY_REFRESH_MS) {
+                capacityReadAt = now;
+                long avail = availableMemoryBytes();
+                if (avail > 0) {
+                    long units = used + (avail / 2) / UNIT_BYTES;
+                    capacity = (int) Math.max(MIN_CAPACITY, Math.min(maxCapacity, units));
+                }
+            }
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int used() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Per-kind running/waiting counts. */
+    public Map<Kind, KindStats> snapshot() {
+        lock.lock();
+        try {
+            Map<Kind, KindStats> out = new EnumMap<>(Kind.class);
+            for (Kind k : Kind.values()) out.put(k, new KindStats(running.get(k), waiting.get(k)));
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Linux: MemAvailable counts reclaimable page cache, "free" does not; elsewhere the JVM's view
+    private static long availableMemoryBytes() {
+        try {
+            Path meminfo = Paths.get("/proc/meminfo");
+            if (Files.isReadable(meminfo)) {
+                for (String line : Files.readAllLines(meminfo)) {
+                    if (!line.startsWith("MemAvailable:")) continue;
+                    String kb = line.substring("MemAvailable:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (Exception ignored) {}
+        try {
+            if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+                return os.getFreeMemorySize();
+            }
+        } catch (Exception ignored) {}
+        return -1;
+    }
+}
@@ -0,0 +1,105 @@
+package com.grabx.app.grabx.util;
+
+import java.io.File;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU/I/O priority classes for child processes (Linux only; elsewhere {@link #apply} is a no-op).
+ * <p>
+ * The command is prefixed with {@code nice -n N ionice -c 2 -n L}; both exec the real
+ * program, so the PID the app holds (pause/kill of the tree) is still yt-dlp's/ffmpeg's.
+ * {@link #BACKGROUND} additionally runs in a {@code grabx-background.slice} cgroup with a low
+ * CPU/IO weight when a user systemd instance can create scopes ({@code systemd-run --user --scope},
+ * which also execs in place).
+ */
+public enum ProcessPriority {
+    /** Someone is waiting on it (Add Link probe, playlist listing). */
+    INTERACTIVE(0, 0, 0),
+    /** Running downloads. */
+    TRANSFER(5, 4, 0),
+    /** Bulk work nobody watches: playlist batch probing, post-download remux. */
+    BACKGROUND(15, 7, 20);
+
+    private final int nice;
+    private final int ioLevel;    // best-effort class level, 0 (high) .. 7 (low)
+    private final int cgroupWeight; // CPUWeight/IOWeight of the scope, 0 = no scope
+
+    private static volatile boolean enabled = true;
+    private static volatile Boolean linux;
+    private static final Map<String, String> TOOLS = new ConcurrentHashMap<>(); // name -> path, "" = not found
+    private static volatile Boolean scopesWork;
+
+    ProcessPriority(int nice, int ioLevel, int cgroupWeight) {
+        this.nice = nice;
+        this.ioLevel = ioLevel;
+        this.cgroupWeight = cgroupWeight;
+    }
+
+    public static void setEnabled(boolean on) { enabled = on; }
+
+    /** Rewrite {@code pb}'s command to run in this class; returns {@code pb}. */
+    public ProcessBuilder apply(ProcessBuilder pb) {
+        if (!enabled || !isLinux() || pb.command().isEmpty()) return pb;
+        if (this == INTERACTIVE) return pb; // default priority already
+
+        List<String> prefix = new ArrayList<>();
+        if (cgroupWeight > 0 && scopesWork()) {
+            prefix.addAll(List.of(tool("systemd-run"), "--user", "--scope", "--quiet", "--collect",
+                    "--slice=grabx-background.slice",
+                    "-p", "CPUWeight=" + cgroupWeight, "-p", "IOWeight=" + cgroupWeight, "--"));
+        }
+        String n = tool("nice");
+        if (!n.isEmpty() && nice > 0) prefix.addAll(List.of(n, "-n", Integer.toString(nice)));
+        String io = tool("ionice");
+        if (!io.isEmpty()) prefix.addAll(List.of(io, "-c", "2", "-n", Integer.toString(ioLevel)));
+        if (prefix.isEmpty()) return pb;
+
+        List<String> cmd = new ArrayList<>(prefix);
+        cmd.addAll(pb.command());
+        return pb.command(cmd);
+    }
+
+    private static boolean isLinux() {
+        Boolean l = linux;
+        if (l == null) linux = l = YtDlpManager.detectOS() == YtDlpManager.OS.LINUX;
+        return l;
+    }
+
+    private static String tool(String name) {
+        return TOOLS.computeIfAbsent(name, ProcessPriority::findOnPath);
+    }
+
+    // One throwaway scope tells whether the user manager is reachable (no session bus in many setups)
+    private static synchronized boolean scopesWork() {
+        if (scopesWork == null) {
+            boolean ok = false;
+            String run = tool("systemd-run");
+            if (!run.isEmpty()) {
+                try {
+                    Process p = new ProcessBuilder(run, "--user", "--scope", "--quiet", "--collect", "true")
+                            .redirectErrorStream(true)
+                            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                            .start();
+                    ok = p.waitFor(5, TimeUnit.SECONDS) && p.exitValue() == 0;
+                    if (!ok) p.destroyForcibly();
+                } catch (Exception ignored) {}
+            }
+            scopesWork = ok;
+        }
+        return scopesWork;
+    }
+
+    private static String findOnPath(String exe) {
+        String path = System.getenv("PATH");
+        if (path == null || path.isBlank()) return "";
+        for (String part : path.split(File.pathSeparator)) {
+            if (part == null || part.isBlank()) continue;
+            Path cand = Paths.get(part, exe);
+            if (Files.isExecutable(cand)) return cand.toString();
+        }
+        return "";
+    }
+}
@@ -0,0 +1,78 @@
+package com.grabx.app.grabx.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Child process lifecycle without a thread per process: exits are observed through
+ * {@link Process#onExit()}, and termination escalates from {@code destroy()} to
+ * {@code destroyForcibly()} on a shared timer instead of sleeping in the caller.
+ * <p>
+ * {@link #terminate(Process)} returns at once, so cancelling a hundred rows from the FX
+ * thread costs a hundred signals, not a hundred sleeps.
+ */
+public final class ProcessSupervisor {
+
+    /** How long a tree gets to exit on SIGTERM before it is killed. */
+    public static final long DEFAULT_GRACE_MS = 1500;
+
+    private static final ProcessSupervisor SHARED = new ProcessSupervisor();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "grabx-process-supervisor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ProcessSupervisor() {}
+
+    public static ProcessSupervisor shared() { return SHARED; }
+
+    /** Exit code of {@code p} once it has exited (completes on the process reaper, never blocks a caller). */
+    public CompletableFuture<Integer> watch(Process p) {
+        return p.onExit().handle((x, e) -> p.exitValue());
+    }
+
+    public CompletableFuture<Process> terminate(Process p) {
+        return terminate(p, DEFAULT_GRACE_MS);
+    }
+
+    /**
+     * Ask the whole tree to stop now and force whatever is still alive after {@code graceMs}.
+     * The descendants are captured up front: once the parent is gone they are re-parented and
+     * no longer show up under it. Completes when the root process has exited.
+     */
+    public CompletableFuture<Process> terminate(Process p, long graceMs) {
+        if (p == null) return CompletableFuture.completedFuture(null);
+
+        List<ProcessHandle> tree = new ArrayList<>();
+        try {
+            p.descendants().forEach(tree::add);
+        } catch (Exception ignored) {}
+
+        // children first, so the parent can't start new ones (e.g. yt-dlp -> ffmpeg)
+        for (ProcessHandle h : tree) {
+            try { h.destroy(); } catch (Exception ignored) {}
+        }
+        try { p.destroy(); } catch (Exception ignored) {}
+
+        ScheduledFuture<?> force = timer.schedule(() -> {
+            for (ProcessHandle h : tree) {
+                try { if (h.isAlive()) h.destroyForcibly(); } catch (Exception ignored) {}
+            }
+            try { if (p.isAlive()) p.destroyForcibly(); } catch (Exception ignored) {}
+        }, Math.max(0, graceMs), TimeUnit.MILLISECONDS);
+
+        return p.onExit().whenComplete((x, e) -> {
+            // Everyone left on SIGTERM: nothing to escalate
+            boolean anyAlive = false;
+            for (ProcessHandle h : tree) {
+                if (h.isAlive()) {
+                    anyAlive = true;
+                    break;
+                }
+            }
+            if (!anyAlive) force.cancel(false);
+        });
+    }
+}
@@ -186,7 +186,7 @@ public final class YtDlpManager {
         pb.redirectErrorStream(true);
         pb.environment().putIfAbsent("PYTHONIOENCODING", "utf-8");
 
-        Process p = pb.start();
+        Process p = ProcessBudget.shared().start(ProcessBudget.Kind.PROBE, pb);
 
         StringBuilder sb = new StringBuilder();
         try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
@@ -200,6 +200,47 @@ public final class YtDlpManager {
         return sb.toString();
     }
 
+    /**
+     * Run yt-dlp and hand every top-level JSON value on stdout to {@code onObject} as soon as
+     * it is complete (e.g. {@code -J url1 url2 ...} prints one info object per URL).
+     * stderr (errors for single URLs with --ignore-errors) is discarded. Returns the exit code.
+     */
+    public static int runJsonStream(List<String> args, ProcessPriority priority,
+                                    java.util.function.Consumer<com.fasterxml.jackson.databind.JsonNode> onObject)
+            throws IOException, InterruptedException {
+        long t = tStart("runJsonStream", String.join(" ", args));
+
+        Path bin = ensureAvailable();
+        if (bin == null || !Files.exists(bin)) throw new FileNotFoundException("yt-dlp not found");
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(bin.toAbsolutePath().toString());
+        cmd.addAll(args);
+
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        pb.environment().putIfAbsent("PYTHONIOENCODING", "utf-8");
+
+        Process p = ProcessBudget.shared().start(ProcessBudget.Kind.PROBE, priority, pb);
+        try (InputStream in = p.getInputStream();
+             com.fasterxml.jackson.databind.MappingIterator<com.fasterxml.jackson.databind.JsonNode> it =
+                     new com.fasterxml.jackson.databind.ObjectMapper()
+                             .readerFor(com.fasterxml.jackson.databind.JsonNode.class)
+                             .readValues(in)) {
+            while (it.hasNextValue()) {
+                com.fasterxml.jackson.databind.JsonNode n = it.nextValue();
+                if (n != null && n.isObject()) onObject.accept(n);
+            }
+        } catch (com.fasterxml.jackson.core.JsonProcessingException | RuntimeException e) {
+            // Malformed output: stop reading, keep what was delivered
+            p.destroyForcibly();
+        }
+
+        int code = p.waitFor();
+        tEnd("runJsonStream(exit=" + code + ")", t);
+        return code;
+    }
+
 
 
     // ============================
@@ -273,7 +314,7 @@ public final class YtDlpManager {
 
         if (listener != null) listener.onStatus("Starting...");
 
-        Process p = pb.start();
+        Process p = ProcessBudget.shared().start(ProcessBudget.Kind.DOWNLOAD, pb);
 
         try (BufferedReader br = new BufferedReader(
                 new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
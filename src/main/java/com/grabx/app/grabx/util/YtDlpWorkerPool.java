@@ -0,0 +1,341 @@
+package com.grabx.app.grabx.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A few long-lived Python processes that import the {@code yt_dlp} module once and then
+ * answer line-delimited JSON requests on stdin, so probes skip interpreter start-up,
+ * extractor import and PyInstaller unpacking.
+ * <p>
+ * Protocol (one JSON object per line, both ways):
+ * <pre>
+ *   -> {"id": 7, "op": "extract",  "url": "...", "format": "..."}   same as yt-dlp -J [-f ...]
+ *   -> {"id": 8, "op": "simulate", "url": "...", "format": "..."}   fresh extraction, selection summary
+ *   -> {"id": 9, "op": "select",   "url": "...", "format": "..."}   selection on the cached extraction
+ *   <- {"id": 7, "ok": true, "result": {...}}
+ *   <- {"id": 7, "ok": false, "error": "ERROR: ..."}
+ * </pre>
+ * A URL always goes to the same worker, so {@code select} after {@code extract} hits that
+ * worker's cache. Only available when a local Python has {@code yt_dlp} installed; callers
+ * fall back to {@link YtDlpManager#run(List)} otherwise.
+ */
+public final class YtDlpWorkerPool {
+
+    /** The worker's yt_dlp reported an error. It can be older than the managed binary, which may still succeed. */
+    public static final class RemoteError extends IOException {
+        public RemoteError(String message) { super(message); }
+    }
+
+    public static final int MAX_WORKERS = 8;
+    private static final long DEFAULT_TIMEOUT_MS = 60_000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String WORKER_SCRIPT = """
+            import copy, json, sys
+            from collections import OrderedDict
+
+            out = sys.stdout
+            sys.stdout = sys.stderr  # yt-dlp output must not mix with replies
+
+            import yt_dlp
+
+            class Log:
+                def __init__(self): self.errors = []
+                def debug(self, msg): pass
+                def info(self, msg): pass
+                def warning(self, msg): pass
+                def error(self, msg): self.errors.append(msg)
+
+            # Same client and headers as the yt-dlp command lines, so probes see the formats downloads get
+            BASE = {'quiet': True, 'no_warnings': True, 'noplaylist': True, 'skip_download': True,
+                    'simulate': True, 'noprogress': True, 'color': {'stderr': 'never', 'stdout': 'never'},
+                    'http_headers': {'User-Agent': 'Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 '
+                                                   '(KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36',
+                                     'Referer': 'https://www.youtube.com/'},
+                    'extractor_args': {'youtube': {'player_client': ['android']}}}
+            cache = OrderedDict()  # url -> sanitized info, most recent last
+
+            def ydl(fmt, log):
+                opts = dict(BASE, logger=log)
+                if fmt: opts['format'] = fmt
+                return yt_dlp.YoutubeDL(opts)
+
+            def remember(url, info):
+                cache[url] = info
+                cache.move_to_end(url)
+                while len(cache) > 16: cache.popitem(last=False)
+
+            def size(f):
+                return f.get('filesize') or f.get('filesize_approx')
+
+            def summary(info):
+                req = info.get('requested_formats') or [info]
+                total = size(info)
+                if not total and all(size(f) for f in req): total = sum(size(f) for f in req)
+                return {'format_id': info.get('format_id'), 'ext': info.get('ext'),
+                        'height': info.get('height'), 'filesize': total or None,
+                        'requested': [{'format_id': f.get('format_id'), 'ext': f.get('ext'),
+                                       'filesize': size(f), 'protocol': f.get('protocol')} for f in req]}
+
+            def handle(req, log):
+                op, url, fmt = req.get('op'), req.get('url'), req.get('format')
+                if op == 'extract':
+                    with ydl(fmt, log) as y:
+                        info = y.sanitize_info(y.extract_info(url, download=False))
+                    if not fmt: remember(url, info)
+                    return info
+                if op == 'simulate' or (op == 'select' and url not in cache):
+                    with ydl(None, log) as y:
+                        remember(url, y.sanitize_info(y.extract_info(url, download=False)))
+                if op in ('simulate', 'select'):
+                    with ydl(fmt, log) as y:
+                        return summary(y.sanitize_info(y.process_ie_result(copy.deepcopy(cache[url]), download=False)))
+                raise ValueError('unknown op: %s' % op)
+
+            out.write(json.dumps({'id': 0, 'ok': True, 'result': {'version': yt_dlp.version.__version__}}) + '\\n')
+            out.flush()
+            for line in sys.stdin:
+                if not line.strip(): continue
+                req, log = {}, Log()
+                try:
+                    req = json.loads(line)
+                    reply = {'id': req.get('id'), 'ok': True, 'result': handle(req, log)}
+                except BaseException as e:
+                    if isinstance(e, KeyboardInterrupt): break
+                    msg = log.errors[-1] if log.errors else ('%s: %s' % (type(e).__name__, e))
+                    reply = {'id': req.get('id'), 'ok': False, 'error': msg}
+                out.write(json.dumps(reply, default=str) + '\\n')
+                out.flush()
+            """;
+
+    private static final YtDlpWorkerPool SHARED = new YtDlpWorkerPool();
+
+    private final Object lock = new Object();
+    private final AtomicLong ids = new AtomicLong(1);
+    private Worker[] workers = new Worker[0];
+
+    private volatile String python;       // interpreter with yt_dlp, "" = none found
+    private volatile Path scriptFile;
+
+    private YtDlpWorkerPool() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "grabx-ytdlp-workers-stop"));
+    }
+
+    public static YtDlpWorkerPool shared() { return SHARED; }
+
+    // ========= Availability =========
+
+    /** A Python with an importable {@code yt_dlp} was found (checked once per run, blocking). */
+    public boolean isAvailable() {
+        String py = python;
+        if (py == null) {
+            synchronized (lock) {
+                if (python == null) python = findPython();
+                py = python;
+            }
+        }
+        return !py.isEmpty();
+    }
+
+    private static String findPython() {
+        List<String> candidates = YtDlpManager.detectOS() == YtDlpManager.OS.WINDOWS
+                ? List.of("python", "py", "python3")
+                : List.of("python3", "python");
+        for (String c : candidates) {
+            try {
+                Process p = ProcessBudget.shared().start(ProcessBudget.Kind.PROBE,
+                        new ProcessBuilder(c, "-c", "import yt_dlp")
+                                .redirectErrorStream(true)
+                                .redirectOutput(ProcessBuilder.Redirect.DISCARD));
+                if (p.waitFor(15, TimeUnit.SECONDS) && p.exitValue() == 0) return c;
+                p.destroyForcibly();
+            } catch (Exception ignored) {}
+        }
+        return "";
+    }
+
+    // ========= Requests =========
+
+    /** Same JSON as {@code yt-dlp -J --no-playlist [-f format] url}. */
+    public JsonNode extract(String url, String format) throws IOException, InterruptedException {
+        return request("extract", url, format, DEFAULT_TIMEOUT_MS);
+    }
+
+    /** Fresh extraction + format selection; returns {format_id, ext, height, filesize, requested[]}. */
+    public JsonNode simulate(String url, String format) throws IOException, InterruptedException {
+        return request("simulate", url, format, DEFAULT_TIMEOUT_MS);
+    }
+
+    /** Like {@link #simulate} but reuses the worker's cached extraction of {@code url} when it has one. */
+    public JsonNode select(String url, String format) throws IOException, InterruptedException {
+        return request("select", url, format, DEFAULT_TIMEOUT_MS);
+    }
+
+    private JsonNode request(String op, String url, String format, long timeoutMs)
+            throws IOException, InterruptedException {
+        if (url == null || url.isBlank()) throw new IllegalArgumentException("url");
+
+        long t = YtDlpManager.tStart("worker." + op, url);
+        Worker w = workerFor(url);
+
+        long id = ids.getAndIncrement();
+        ObjectNode req = MAPPER.createObjectNode();
+        req.put("id", id);
+        req.put("op", op);
+        req.put("url", url.trim());
+        if (format != null && !format.isBlank()) req.put("format", format);
+
+        CompletableFuture<JsonNode> reply = new CompletableFuture<>();
+        w.pending.put(id, reply);
+        try {
+            w.send(MAPPER.writeValueAsString(req));
+            JsonNode r = reply.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (!r.path("ok").asBoolean(false)) throw new RemoteError(r.path("error").asText("yt-dlp error"));
+            YtDlpManager.tEnd("worker." + op, t);
+            return r.path("result");
+        } catch (TimeoutException e) {
+            // A stuck extractor blocks every later request on this worker: replace it
+            w.kill();
+            throw new IOException("yt-dlp worker timed out", e);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException io) ? io : new IOException(e.getCause());
+        } finally {
+            w.pending.remove(id);
+        }
+    }
+
+    // ========= Pool =========
+
+    /** Number of worker processes; extra ones are stopped, missing ones start on demand. */
+    public void setSize(int size) {
+        int n = Math.max(1, Math.min(MAX_WORKERS, size));
+        synchronized (lock) {
+            if (n == workers.length) return;
+            for (int i = n; i < workers.length; i++) {
+                if (workers[i] != null) workers[i].kill();
+            }
+            workers = Arrays.copyOf(workers, n);
+        }
+    }
+
+    /** Start every worker in the background so the first probe doesn't pay for the import. */
+    public void prewarmAsync() {
+        Thread t = new Thread(() -> {
+            try {
+                if (!isAvailable()) return;
+                synchronized (lock) {
+                    if (workers.length == 0) workers = new Worker[1];
+                    for (int i = 0; i < workers.length; i++) {
+                        if (workers[i] == null || !workers[i].isAlive()) workers[i] = new Worker(startProcess(), i);
+                    }
+                }
+            } catch (Exception ignored) {}
+        }, "grabx-prewarm-ytdlp-workers");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            for (Worker w : workers) {
+                if (w != null) w.kill();
+            }
+            Arrays.fill(workers, null);
+        }
+    }
+
+    private Worker workerFor(String url) throws IOException {
+        if (!isAvailable()) throw new FileNotFoundException("Python yt_dlp module not found");
+        synchronized (lock) {
+            if (workers.length == 0) workers = new Worker[1];
+            int slot = Math.floorMod(url.trim().hashCode(), workers.length);
+            Worker w = workers[slot];
+            if (w == null || !w.isAlive()) {
+                w = new Worker(startProcess(), slot);
+                workers[slot] = w;
+            }
+            return w;
+        }
+    }
+
+    private Process startProcess() throws IOException {
+        Path script = scriptFile;
+        if (script == null || !Files.exists(script)) {
+            script = Files.createTempFile("grabx-ytdlp-worker", ".py");
+            Files.writeString(script, WORKER_SCRIPT, StandardCharsets.UTF_8);
+            script.toFile().deleteOnExit();
+            scriptFile = script;
+        }
+        ProcessBuilder pb = new ProcessBuilder(python, "-u", script.toAbsolutePath().toString());
+        pb.environment().put("PYTHONIOENCODING", "utf-8");
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            return ProcessBudget.shared().start(ProcessBudget.Kind.WORKER, pb);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // WORKER never waits; keep the signature simple
+            throw new InterruptedIOException("interrupted");
+        }
+    }
+
+    private final class Worker {
+        final Process process;
+        final BufferedWriter in;
+        final Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+
+        Worker(Process process, int slot) {
+            this.process = process;
+            this.in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+            Thread reader = new Thread(this::readReplies, "grabx-ytdlp-worker-" + slot);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        boolean isAlive() { return process.isAlive(); }
+
+        synchronized void send(String line) throws IOException {
+            if (!process.isAlive()) throw new IOException("yt-dlp worker exited");
+            in.write(line);
+            in.write('\n');
+            in.flush();
+        }
+
+        void kill() {
+            try { process.getOutputStream().close(); } catch (Exception ignored) {}
+            process.destroyForcibly();
+        }
+
+        private void readReplies() {
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    JsonNode r;
+                    try {
+                        r = MAPPER.readTree(line);
+                    } catch (Exception e) {
+                        continue;
+                    }
+                    long id = r.path("id").asLong(-1);
+                    if (id == 0) continue; // start-up banner
+                    CompletableFuture<JsonNode> f = pending.remove(id);
+                    if (f != null) f.complete(r);
+                }
+            } catch (Exception ignored) {}
+
+            // Process gone: whoever is still waiting gets an error instead of a timeout
+            IOException dead = new IOException("yt-dlp worker exited");
+            for (CompletableFuture<JsonNode> f : pending.values()) f.completeExceptionally(dead);
+            pending.clear();
+        }
+    }
+}
@@ -8,6 +8,9 @@ module com.grabx.app.grabx {
     requires javafx.graphics;
     requires java.prefs;
     requires java.net.http;
+    requires java.xml;
+    requires java.management;
+    requires jdk.management;
     requires com.fasterxml.jackson.databind;
 
 
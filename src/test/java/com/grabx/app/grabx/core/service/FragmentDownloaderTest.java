@@ -0,0 +1,263 @@
+package com.grabx.app.grabx.core.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the fragment engine against a local HTTP server that serves the manifests in
+ * {@code src/test/resources/fixtures/stream} and generated segment bodies.
+ */
+class FragmentDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private HttpServer server;
+    private URI root;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, Long> delayMs = new ConcurrentHashMap<>();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final List<String> rangesSeen = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        for (String name : List.of("byterange.m3u8", "aes.m3u8", "plain.m3u8", "timeline.mpd")) {
+            files.put("/" + name, fixture(name));
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        root = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void hlsByteRangesReadSubRangesOfOneResource() throws Exception {
+        byte[] media = payload("media.mp4", 3000);
+        files.put("/media.mp4", media);
+
+        StreamManifest.Media m = loadHls("byterange.m3u8");
+        assertNotNull(m.init);
+        assertEquals(0, m.init.offset); // BYTERANGE without "@offset" starts at 0
+        assertEquals(64, m.init.length);
+        assertEquals(List.of(64L, 1064L, 2064L), m.fragments.stream().map(f -> f.offset).toList());
+
+        Path out = download(m, "byterange.mp4", 3);
+
+        assertArrayEquals(media, Files.readAllBytes(out));
+        assertTrue(rangesSeen.containsAll(List.of("bytes=0-63", "bytes=64-1063", "bytes=1064-2063", "bytes=2064-2999")));
+    }
+
+    @Test
+    void hlsAes128UsesSequenceAndExplicitIvs() throws Exception {
+        byte[] key = payload("key.bin", 16);
+        files.put("/key.bin", key);
+
+        byte[] iv2 = new byte[16];
+        for (int i = 0; i < 16; i++) iv2[i] = (byte) i;
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 4; i++) {
+            byte[] clear = payload("enc" + i, 1000 + i * 37);
+            expected.write(clear);
+            byte[] body = switch (i) {
+                case 0, 1 -> encrypt(key, sequenceIv(7 + i), clear); // media sequence starts at 7
+                case 2 -> encrypt(key, iv2, clear);
+                default -> clear;                                     // METHOD=NONE
+            };
+            files.put("/enc" + i + ".ts", body);
+        }
+
+        Path out = download(loadHls("aes.m3u8"), "aes.ts", 2);
+
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(out));
+        assertEquals(1, hits.get("/key.bin").get(), "the key is fetched once per URI");
+    }
+
+    @Test
+    void dashSegmentTemplateWithTimelineAndNumbers() throws Exception {
+        StreamManifest sm = StreamManifest.parse(root.resolve("timeline.mpd"),
+                new String(files.get("/timeline.mpd"), StandardCharsets.UTF_8));
+        assertEquals(StreamManifest.Kind.DASH, sm.kind);
+
+        StreamManifest.Variant video = sm.pickVariant(0);
+        assertEquals(List.of("/dash/v1/t0.m4s", "/dash/v1/t4000.m4s", "/dash/v1/t8000.m4s", "/dash/v1/t10000.m4s"),
+                video.media.fragments.stream().map(f -> f.uri.getPath()).toList());
+
+        StreamManifest.Variant audio = sm.pickAudio(video);
+        assertEquals(List.of("/dash/a1/00001.m4s", "/dash/a1/00002.m4s", "/dash/a1/00003.m4s"),
+                audio.media.fragments.stream().map(f -> f.uri.getPath()).toList());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (StreamManifest.Fragment f : video.media.all()) {
+            byte[] body = payload(f.uri.getPath(), 700);
+            files.put(f.uri.getPath(), body);
+            expected.write(body);
+        }
+
+        Path out = download(video.media, "video.mp4", 3);
+
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(out));
+    }
+
+    @Test
+    void reorderBufferWritesFragmentsInPlaylistOrder() throws Exception {
+        byte[] expected = servePlainSegments();
+        // Earlier fragments answer last, so they complete out of order
+        for (int i = 0; i < 4; i++) delayMs.put("/seg" + i + ".ts", 400L - i * 100L);
+
+        Path out = download(loadHls("plain.m3u8"), "plain.ts", 4);
+
+        assertArrayEquals(expected, Files.readAllBytes(out));
+        assertTrue(maxInFlight.get() > 1, "fragments were fetched in parallel");
+    }
+
+    @Test
+    void fragStateResumesAfterTheLastWrittenFragment() throws Exception {
+        byte[] expected = servePlainSegments();
+        StreamManifest.Media m = loadHls("plain.m3u8");
+        Path target = dir.resolve("resume.ts");
+        Path state = dir.resolve("resume.ts.part.frag");
+
+        failing.add("/seg3.ts");
+        FragmentDownloader first = new FragmentDownloader(HttpClient.newHttpClient(), 2, 0);
+        assertThrows(IOException.class, () -> first.download(m, target, () -> false, null, null));
+        assertFalse(Files.exists(target));
+        assertEquals("3", Files.readAllLines(state).get(1), "three fragments are on disk");
+
+        failing.clear();
+        hits.clear();
+        new FragmentDownloader(HttpClient.newHttpClient(), 2, 0).download(m, target, () -> false, null, null);
+
+        assertArrayEquals(expected, Files.readAllBytes(target));
+        for (int i = 0; i < 3; i++) assertNull(hits.get("/seg" + i + ".ts"), "seg" + i + " was fetched again");
+        assertFalse(Files.exists(state));
+    }
+
+    // ============================
+    // Helpers
+    // ============================
+
+    private StreamManifest.Media loadHls(String name) {
+        return HlsParser.parseMedia(root.resolve(name), new String(files.get("/" + name), StandardCharsets.UTF_8));
+    }
+
+    private Path download(StreamManifest.Media m, String name, int parallel) throws Exception {
+        Path target = dir.resolve(name);
+        new FragmentDownloader(HttpClient.newHttpClient(), parallel, 0).download(m, target, () -> false, null, null);
+        assertFalse(Files.exists(dir.resolve(name + ".part")));
+        return target;
+    }
+
+    private byte[] servePlainSegments() throws IOException {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (int i = 0; i < 8; i++) {
+            byte[] body = payload("seg" + i, 500 + i * 11);
+            files.put("/seg" + i + ".ts", body);
+            all.write(body);
+        }
+        return all.toByteArray();
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        try (ex) {
+            Long delay = delayMs.get(path);
+            if (delay != null) Thread.sleep(delay);
+
+            byte[] body = files.get(path);
+            if (body == null || failing.contains(path)) {
+                ex.sendResponseHeaders(body == null ? 404 : 503, -1);
+                return;
+            }
+
+            String range = ex.getRequestHeaders().getFirst("Range");
+            int code = 200;
+            if (range != null) {
+                rangesSeen.add(range);
+                Matcher m = RANGE.matcher(range);
+                if (!m.matches()) {
+                    ex.sendResponseHeaders(416, -1);
+                    return;
+                }
+                int from = Integer.parseInt(m.group(1));
+                int to = m.group(2).isEmpty() ? body.length - 1 : Math.min(body.length - 1, Integer.parseInt(m.group(2)));
+                ex.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + body.length);
+                body = Arrays.copyOfRange(body, from, to + 1);
+                code = 206;
+            }
+            ex.sendResponseHeaders(code, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = FragmentDownloaderTest.class.getResourceAsStream("/fixtures/stream/" + name)) {
+            if (in == null) throw new IOException("Missing fixture " + name);
+            return in.readAllBytes();
+        }
+    }
+
+    // Deterministic bytes per name, so each fragment is distinguishable in the output
+    private static byte[] payload(String name, int length) {
+        byte[] b = new byte[length];
+        new Random(name.hashCode()).nextBytes(b);
+        return b;
+    }
+
+    private static byte[] sequenceIv(long sequence) {
+        byte[] iv = new byte[16];
+        for (int i = 0; i < 8; i++) iv[15 - i] = (byte) (sequence >>> (8 * i));
+        return iv;
+    }
+
+    private static byte[] encrypt(byte[] key, byte[] iv, byte[] clear) throws Exception {
+        Cipher c = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        return c.doFinal(clear);
+    }
+}